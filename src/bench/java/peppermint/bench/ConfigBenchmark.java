@@ -0,0 +1,50 @@
+package peppermint.bench;
+
+import peppermint.AppContext;
+import peppermint.config.ConfigManager;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading and saving config.toml. Runs relative to the working directory, which the
+ * bench target points at build/bench-work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+
+    private ConfigManager configManager;
+
+    @Setup
+    public void setup() {
+        configManager = AppContext.getConfigManager();
+        configManager.saveConfig();
+    }
+
+    @Benchmark
+    public String loadConfig() {
+        configManager.loadConfig();
+        return configManager.getCurrentTheme();
+    }
+
+    @Benchmark
+    public ConfigManager saveConfig() {
+        configManager.saveConfig();
+        return configManager;
+    }
+}
@@ -0,0 +1,130 @@
+package peppermint.bench;
+
+import peppermint.gens.PatternGenerator;
+import peppermint.gens.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares pattern selection through the precomputed candidate tables against the
+ * previous implementation, which copied every candidate group into a new list per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternGeneratorBenchmark {
+
+    @Param({"DAY", "NIGHT", "POOL", "FOG", "ROOF"})
+    public World world;
+
+    private PatternGenerator generator;
+    private LegacyPatternSelector legacy;
+    private String levelName;
+
+    @Setup
+    public void setup() {
+        generator = new PatternGenerator(new SplittableRandom(42));
+        legacy = new LegacyPatternSelector(new SplittableRandom(42));
+        levelName = world.getNumber() + "-1 (" + world.getDisplayName() + ")";
+    }
+
+    @Benchmark
+    public String legacyListCopy() {
+        return legacy.generatePattern(levelName);
+    }
+
+    @Benchmark
+    public String precomputedTables() {
+        return generator.generatePattern(world, false);
+    }
+
+    @Benchmark
+    public int precomputedOrdinal() {
+        return generator.nextPatternOrdinal(world);
+    }
+
+    /**
+     * Copy of the list-building selection PatternGenerator used before the candidate
+     * tables were introduced, kept here as the benchmark baseline
+     */
+    static class LegacyPatternSelector {
+        private static final String[] REGULAR_PATTERNS = {
+            "Classic", "SLS+DRS", "DSR", "DSR+3R", "CB",
+            "Classic+LS", "Classic+ILS", "DSR+LS", "DSR+LS+3R",
+            "DSR+ILS", "DSR+ILS+3R", "MR+Classic", "MR+DSR", "MR+DSR+3R"
+        };
+        private static final String[] INVERTED_PATTERNS = {
+            "Inverted Classic", "Inverted DSR", "Inverted DSR+3R"
+        };
+        private static final String[] WATER_SKI_PATTERNS = {
+            "Water Ski", "Water Ski DSR", "Water Ski DSR+3R"
+        };
+        private static final String[] INVERTED_WATER_SKI_PATTERNS = {
+            "Inverted Water Ski", "Inverted Water Ski DSR", "Inverted Water Ski DSR+3R"
+        };
+        private static final String[] CORNER_SUNS_PATTERNS = {
+            "Corner Suns S", "Corner Suns", "Corner Suns L", "Corner Suns XL"
+        };
+        private static final String[] ZOMBIE_CHEWER_PATTERNS = {
+            "Zombie Chewer", "Zombie Chewer Xtreme"
+        };
+
+        private final SplittableRandom random;
+
+        LegacyPatternSelector(SplittableRandom random) {
+            this.random = random;
+        }
+
+        String generatePattern(String level) {
+            boolean isPoolLevel = level.contains("(Pool)");
+            List<String> availablePatterns = new ArrayList<>();
+
+            for (String pattern : REGULAR_PATTERNS) {
+                availablePatterns.add(pattern);
+            }
+            if (random.nextInt(100) < 20) {
+                for (String pattern : INVERTED_PATTERNS) {
+                    availablePatterns.add(pattern);
+                }
+            }
+            if (isPoolLevel) {
+                for (String pattern : WATER_SKI_PATTERNS) {
+                    availablePatterns.add(pattern);
+                }
+                if (random.nextInt(100) < 20) {
+                    for (String pattern : INVERTED_WATER_SKI_PATTERNS) {
+                        availablePatterns.add(pattern);
+                    }
+                }
+            }
+            for (String pattern : CORNER_SUNS_PATTERNS) {
+                availablePatterns.add(pattern);
+            }
+            if (random.nextInt(100) < 10) {
+                for (String pattern : ZOMBIE_CHEWER_PATTERNS) {
+                    availablePatterns.add(pattern);
+                }
+            }
+
+            return availablePatterns.get(random.nextInt(availablePatterns.size()));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package peppermint.bench;
+
+import peppermint.gens.CompactPreset;
+import peppermint.gens.GenerationOptions;
+import peppermint.gens.PresetGenerator;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single and bulk preset generation, in string and compact form.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PresetGeneratorBenchmark {
+
+    @Param({"10000"})
+    public int bulkCount;
+
+    private PresetGenerator generator;
+    private GenerationOptions options;
+    private long runSeed;
+
+    @Setup
+    public void setup() {
+        generator = new PresetGenerator(new SplittableRandom(42));
+        options = new GenerationOptions(12, true, 8, true);
+        runSeed = 42;
+    }
+
+    @Benchmark
+    public PresetGenerator.Preset singlePreset() {
+        return generator.generatePreset(options);
+    }
+
+    @Benchmark
+    public PresetGenerator.Preset singleSeededPreset() {
+        return generator.generatePreset(runSeed++, options);
+    }
+
+    @Benchmark
+    public CompactPreset singleCompactPreset() {
+        return generator.generateCompactPreset(runSeed++, options);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PresetGenerator.BulkResult bulkPresets() {
+        return generator.generatePresets(bulkCount, options, runSeed++);
+    }
+}
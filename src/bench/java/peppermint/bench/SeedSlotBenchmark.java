@@ -0,0 +1,62 @@
+package peppermint.bench;
+
+import peppermint.gens.SeedSlotConstraint;
+import peppermint.gens.SeedSlotGenerator;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Seed slot sampling across every supported slot count, with and without constraints.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeedSlotBenchmark {
+
+    @Param({"6", "7", "8", "9", "10"})
+    public int slots;
+
+    private SeedSlotGenerator generator;
+    private SeedSlotConstraint[] constraints;
+
+    @Setup
+    public void setup() {
+        generator = new SeedSlotGenerator(new SplittableRandom(42));
+        constraints = new SeedSlotConstraint[] {
+            SeedSlotConstraint.requireSunProducer(),
+            SeedSlotConstraint.exclude("Imitater")
+        };
+    }
+
+    @Benchmark
+    public List<String> seedSlotNames() {
+        return generator.generateSeedSlots(slots);
+    }
+
+    @Benchmark
+    public long seedSlotMask() {
+        return generator.nextSeedSlotMask(slots);
+    }
+
+    @Benchmark
+    public long constrainedSeedSlotMask() {
+        return generator.nextSeedSlotMask(slots, constraints);
+    }
+}
@@ -0,0 +1,104 @@
+package peppermint.bench;
+
+import peppermint.AppContext;
+import peppermint.themes.ThemeManager;
+import peppermint.themes.ThemeModel;
+import peppermint.themes.ThemePackage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extraction of .pmt theme packages of different sizes, reading them into memory,
+ * and loading their parsed model back from the theme cache. Each package holds the usual theme.toml and
+ * mani.toml plus one incompressible asset of the given size.
+ * Runs relative to the working directory, which the bench target points at build/bench-work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThemePackageBenchmark {
+
+    @Param({"1", "64", "1024"})
+    public int assetKiB;
+
+    private ThemeManager themeManager;
+    private Path packagePath;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path themesDir = Paths.get("PepperMintThemes");
+        Files.createDirectories(themesDir);
+        packagePath = themesDir.resolve("bench-" + assetKiB + "k.pmt");
+        writePackage(packagePath, assetKiB * 1024);
+        themeManager = AppContext.getThemeManager();
+        themeManager.loadThemeModel(packagePath);
+    }
+
+    @Benchmark
+    public Path extractThemePackage() throws IOException {
+        themeManager.extractThemePackage(packagePath);
+        return packagePath;
+    }
+
+    @Benchmark
+    public ThemeModel readInMemory() throws IOException {
+        return ThemePackage.read(packagePath).toModel("bench");
+    }
+
+    @Benchmark
+    public ThemeModel cachedThemeModel() throws IOException {
+        return themeManager.loadThemeModel(packagePath);
+    }
+
+    private static void writePackage(Path target, int assetSize) throws IOException {
+        byte[] asset = new byte[assetSize];
+        new SplittableRandom(assetSize).nextBytes(asset);
+
+        try (OutputStream fileOut = Files.newOutputStream(target);
+             XZCompressorOutputStream xzOut = new XZCompressorOutputStream(fileOut);
+             TarArchiveOutputStream tarOut = new TarArchiveOutputStream(xzOut)) {
+            addEntry(tarOut, "theme.toml", ("# PepperMint Theme Configuration\n[theme]\nname = \"Bench\"\n"
+                + "developer = \"Bench\"\ndark_mode = true\nencrypted = false\n\n[colors]\n"
+                + "primary = \"#2196F3\"\nsecondary = \"#FF9800\"\nbackground = \"#202020\"\nforeground = \"#E0E0E0\"\n")
+                .getBytes(StandardCharsets.UTF_8));
+            addEntry(tarOut, "mani.toml", ("# PepperMint Theme Manifest\n[manifest]\nname = \"Bench\"\n"
+                + "author = \"Bench\"\nversion = \"1.0\"\ntype = \"theme\"\nencryption = false\n")
+                .getBytes(StandardCharsets.UTF_8));
+            addEntry(tarOut, "assets/background.bin", asset);
+        }
+    }
+
+    private static void addEntry(TarArchiveOutputStream tarOut, String name, byte[] content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        tarOut.putArchiveEntry(entry);
+        tarOut.write(content);
+        tarOut.closeArchiveEntry();
+    }
+}
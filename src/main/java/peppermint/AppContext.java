@@ -0,0 +1,40 @@
+package peppermint;
+
+import peppermint.config.ConfigManager;
+import peppermint.themes.ThemeManager;
+
+/**
+ * Application-wide services, created on first use and shared by every window and
+ * dialog. Each service is built exactly once, so config.toml is read once and the
+ * themes directory is set up once per session, however many windows ask for them.
+ */
+public final class AppContext {
+
+    private AppContext() {
+    }
+
+    // Holder classes: initialized lazily and thread-safely by the class loader, read without locking
+    private static final class ConfigHolder {
+        static final ConfigManager INSTANCE = new ConfigManager();
+    }
+
+    private static final class ThemeHolder {
+        static final ThemeManager INSTANCE = new ThemeManager(ConfigHolder.INSTANCE);
+    }
+
+    /**
+     * Gets the shared configuration
+     * @return The ConfigManager, created on the first call
+     */
+    public static ConfigManager getConfigManager() {
+        return ConfigHolder.INSTANCE;
+    }
+
+    /**
+     * Gets the shared theme manager. It uses the shared configuration
+     * @return The ThemeManager, created on the first call
+     */
+    public static ThemeManager getThemeManager() {
+        return ThemeHolder.INSTANCE;
+    }
+}
@@ -1,15 +1,26 @@
 package peppermint;
 
+import peppermint.cli.BatchCli;
 import peppermint.loader.Loader;
 import peppermint.ui.MainWindow;
 import peppermint.gens.PresetGenerator;
 import peppermint.themes.ThemeManager;
+import peppermint.themes.ThemeModel;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 public class Main {
     public static void main(String[] args) {
+        // Batch mode streams presets without initializing Swing, FlatLaf or themes
+        if (BatchCli.isBatchInvocation(args)) {
+            System.exit(BatchCli.run(args));
+        }
+
+        StartupTimings timings = new StartupTimings();
+
         // Initialize FlatLaf system properties (if available)
         try {
             Class<?> flatSystemPropertiesClass = Class.forName("com.formdev.flatlaf.FlatSystemProperties");
@@ -18,33 +29,48 @@ public class Main {
         } catch (Exception e) {
             // FlatLaf not available, continue without system properties
         }
+        timings.mark("FlatLaf system properties");
 
         // Initialize the loader to load all required libraries
         Loader loader = new Loader();
         loader.loadLibraries();
+        timings.mark("Libraries");
 
-        // Initialize theme manager
-        ThemeManager themeManager = new ThemeManager();
-        themeManager.applyCurrentTheme();
-
-        // Register shutdown hook to save configuration
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
-                // Save the configuration when the application shuts down
-                themeManager.getConfigManager().saveConfig();
-                System.out.println("Configuration saved on shutdown.");
-            } catch (Exception e) {
-                System.err.println("Error saving configuration on shutdown: " + e.getMessage());
-            }
-        }));
+        // Initialize theme manager; the theme is resolved and parsed in the background
+        // and applied once, on the EDT, right before the main window is created
+        ThemeManager themeManager = AppContext.getThemeManager();
+        timings.mark("Theme manager");
+        long themeStart = System.nanoTime();
+        CompletableFuture<ThemeModel> theme = themeManager.resolveCurrentThemeAsync()
+            .whenComplete((model, error) -> timings.record("Theme resolved (background)", themeStart));
 
-        // Create and show the main window
-        SwingUtilities.invokeLater(() -> {
-            // Apply the theme again to ensure it's properly set
-            themeManager.applyCurrentTheme();
+        // Pending configuration changes are flushed by ConfigManager's own shutdown hook
+        timings.mark("Main thread done");
+
+        // Create and show the main window once the theme is ready
+        theme.thenAccept(model -> SwingUtilities.invokeLater(() -> {
+            timings.mark("Waiting for theme and EDT");
+            themeManager.applyTheme(model);
+            timings.mark("Theme applied");
 
             MainWindow mainWindow = new MainWindow(themeManager);
+            timings.mark("Main window created");
             mainWindow.setVisible(true);
-        });
+            timings.mark("Main window shown");
+
+            if (StartupTimings.isEnabled()) {
+                System.out.println(timings);
+            }
+
+            // Index and watch the themes directory in the background, so the theme
+            // manager dialog opens without touching the disk
+            CompletableFuture.runAsync(() -> {
+                try {
+                    themeManager.getThemeIndex().start();
+                } catch (IOException e) {
+                    System.out.println("Warning: Could not watch the themes directory: " + e.getMessage());
+                }
+            });
+        }));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,70 @@
+package peppermint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Breakdown of where startup time goes. Phases are recorded from any thread in the
+ * order they finish; phases that ran in the background overlap the others.
+ * Printed at startup when run with -Dpeppermint.startupTimings=true.
+ */
+public final class StartupTimings {
+    public static final String PROPERTY = "peppermint.startupTimings";
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private long lastMarkNanos = startNanos;
+
+    /**
+     * Records a phase lasting from the previous mark until now
+     * @param phase Phase name
+     */
+    public synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        phaseNanos.put(phase, now - lastMarkNanos);
+        lastMarkNanos = now;
+    }
+
+    /**
+     * Records a phase that ran concurrently with the marked ones, without moving the mark
+     * @param phase Phase name
+     * @param sinceNanos System.nanoTime() when the phase started
+     */
+    public synchronized void record(String phase, long sinceNanos) {
+        phaseNanos.put(phase, System.nanoTime() - sinceNanos);
+    }
+
+    /**
+     * Gets the recorded phases
+     * @return Copy of the phase durations in nanoseconds, in the order they were recorded
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phaseNanos);
+    }
+
+    /**
+     * Gets the time since startup up to the latest mark
+     * @return Elapsed nanoseconds
+     */
+    public synchronized long getTotalNanos() {
+        return lastMarkNanos - startNanos;
+    }
+
+    /**
+     * Whether the breakdown should be printed
+     * @return true if the peppermint.startupTimings system property is set to true
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("Startup timings:\n");
+        for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+            sb.append(String.format("  %-32s %8.1f ms%n", phase.getKey(), phase.getValue() / 1e6));
+        }
+        sb.append(String.format("  %-32s %8.1f ms", "Total", getTotalNanos() / 1e6));
+        return sb.toString();
+    }
+}
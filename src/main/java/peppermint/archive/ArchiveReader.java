@@ -1,10 +1,518 @@
 package peppermint.archive;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+
+/**
+ * Streaming reader and writer for .tar.xz archives such as theme packages (.pmt).
+ * Archives are never held in memory as a whole: entries are streamed to a visitor
+ * or straight to disk through FileChannels, using a small pool of reusable
+ * buffers. Entry names are checked on the way, so no entry can reach outside of
+ * the directory it is extracted to.
+ */
 public class ArchiveReader {
-    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 8;
+
+    // Buffers shared by all archive operations, so extracting many packages doesn't churn the heap
+    private static final ArrayBlockingQueue<byte[]> bufferPool = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    /**
+     * Receives the entries of an archive in archive order
+     */
+    public interface EntryVisitor {
+        /**
+         * Called for each directory entry
+         * @param name Normalized directory name without trailing slash
+         */
+        default void visitDirectory(String name) throws IOException {
+        }
+
+        /**
+         * Called for each file entry
+         * @param name Normalized file name, relative to the archive root
+         * @param size File size in bytes
+         * @param content Stream over the file content, ending with the file; must not be closed
+         * @return true to continue with the next entry, false to stop reading
+         */
+        boolean visitFile(String name, long size, InputStream content) throws IOException;
+    }
+
+    /**
+     * Notified while an archive is being created
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(long bytesDone, long bytesTotal);
+    }
+
+    /**
+     * Streams the entries of a .tar.xz archive to a visitor. Indexes of version 2
+     * theme packages are skipped
+     * @param archivePath Path to the .tar.xz archive
+     * @param visitor Receives the entries
+     * @throws IOException if the archive cannot be read or has an entry outside of its root
+     */
+    public static void readTarXz(Path archivePath, EntryVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(archivePath, StandardOpenOption.READ);
+             InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE)) {
+            readTarXz(in, visitor);
+        }
+    }
+
+    /**
+     * Streams the entries of XZ-compressed tar data to a visitor
+     * @param in Archive data; not closed
+     * @param visitor Receives the entries
+     * @throws IOException if the data cannot be read or has an entry outside of its root
+     */
+    public static void readTarXz(InputStream in, EntryVisitor visitor) throws IOException {
+        // Archives written by ParallelXZOutputStream consist of concatenated XZ streams
+        XZCompressorInputStream xzIn = XZCompressorInputStream.builder()
+            .setInputStream(in)
+            .setDecompressConcatenated(true)
+            .get();
+        TarArchiveInputStream tarIn = new TarArchiveInputStream(xzIn);
+        TarArchiveEntry entry;
+        while ((entry = tarIn.getNextEntry()) != null) {
+            if (IndexedTarWriter.INDEX_ENTRY.equals(entry.getName())) {
+                continue;
+            }
+
+            String name = normalizeEntryName(entry.getName());
+            if (entry.isDirectory()) {
+                if (!name.isEmpty()) {
+                    visitor.visitDirectory(name);
+                }
+            } else if (entry.isFile()) {
+                if (!visitor.visitFile(name, entry.getSize(), tarIn)) {
+                    return;
+                }
+            }
+            // Links and special files are never created
+        }
+    }
+
+    /**
+     * Extracts a .tar.xz archive into a directory, creating it if needed. Existing
+     * files with the same names are overwritten
+     * @param archivePath Path to the .tar.xz archive
+     * @param destination Destination directory
+     * @throws IOException if the archive cannot be read, or has an entry outside of its root
+     */
+    public static void extractTarXz(Path archivePath, Path destination) throws IOException {
+        Path root = destination.toAbsolutePath().normalize();
+        Files.createDirectories(root);
+
+        readTarXz(archivePath, new EntryVisitor() {
+            @Override
+            public void visitDirectory(String name) throws IOException {
+                Files.createDirectories(resolveEntry(root, name));
+            }
+
+            @Override
+            public boolean visitFile(String name, long size, InputStream content) throws IOException {
+                Path target = resolveEntry(root, name);
+                Files.createDirectories(target.getParent());
+                writeFile(content, target);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Replaces a directory with the contents of a .tar.xz archive, as one atomic
+     * step. The archive is extracted into a hidden sibling directory first; files
+     * whose content is unchanged are hard-linked from the current directory instead
+     * of being written again. The finished directory then takes the place of the
+     * old one by renaming. If the process dies at any point, the destination holds
+     * either the complete old or the complete new content, and the next call
+     * cleans up what was left over
+     * @param archivePath Path to the .tar.xz archive
+     * @param destination Directory to replace; created if it doesn't exist
+     * @return Number of files that were unchanged and not rewritten
+     * @throws IOException if the archive cannot be read or has an entry outside of its root.
+     *         The destination is left untouched in that case
+     */
+    public static int extractTarXzAtomically(Path archivePath, Path destination) throws IOException {
+        Path target = destination.toAbsolutePath().normalize();
+        Path parent = target.getParent();
+        String name = target.getFileName().toString();
+        // Hidden names, so directory watchers such as the theme index ignore them
+        Path staging = parent.resolve("." + name + ".extracting");
+        Path backup = parent.resolve("." + name + ".old");
+
+        Files.createDirectories(parent);
+        if (!Files.exists(target) && Files.isDirectory(backup)) {
+            // An earlier swap was interrupted between its two renames
+            Files.move(backup, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        deleteRecursively(backup);
+        deleteRecursively(staging);
+        Files.createDirectory(staging);
+
+        int[] unchanged = {0};
+        boolean complete = false;
+        try {
+            readTarXz(archivePath, new EntryVisitor() {
+                @Override
+                public void visitDirectory(String entryName) throws IOException {
+                    Files.createDirectories(resolveEntry(staging, entryName));
+                }
+
+                @Override
+                public boolean visitFile(String entryName, long size, InputStream content) throws IOException {
+                    Path file = resolveEntry(staging, entryName);
+                    Files.createDirectories(file.getParent());
+                    if (writeIfChanged(content, size, resolveEntry(target, entryName), file)) {
+                        unchanged[0]++;
+                    }
+                    return true;
+                }
+            });
+            complete = true;
+        } finally {
+            if (!complete) {
+                try {
+                    deleteRecursively(staging);
+                } catch (IOException e) {
+                    System.out.println("Warning: Could not delete " + staging + ": " + e.getMessage());
+                }
+            }
+        }
+
+        // A directory can't be renamed over a non-empty one, so the old one moves aside first
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            Files.move(target, backup, StandardCopyOption.ATOMIC_MOVE);
+        }
+        try {
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (Files.exists(backup)) {
+                Files.move(backup, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            throw e;
+        }
+
+        try {
+            deleteRecursively(backup);
+        } catch (IOException e) {
+            // The new content is in place; the leftover is removed by the next extraction
+            System.out.println("Warning: Could not delete " + backup + ": " + e.getMessage());
+        }
+        return unchanged[0];
+    }
+
+    /**
+     * Deletes a file or a directory with everything in it. Unlike a walk that
+     * ignores failures, every file that could not be deleted is reported
+     * @param path File or directory to delete; nothing happens if it doesn't exist
+     * @throws IOException if anything could not be deleted. The first failure is
+     *         thrown, the others are attached as suppressed exceptions
+     */
+    public static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+
+        List<IOException> failures = new ArrayList<>();
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                failures.add(e);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                if (e != null) {
+                    failures.add(e);
+                }
+                delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            private void delete(Path file) {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    failures.add(e);
+                }
+            }
+        });
+
+        if (!failures.isEmpty()) {
+            IOException first = failures.get(0);
+            for (int i = 1; i < failures.size(); i++) {
+                first.addSuppressed(failures.get(i));
+            }
+            throw first;
+        }
+    }
+
+    /**
+     * Creates a version 2 theme package (an indexed .tar.xz archive) from a
+     * directory. Entries are added in sorted order, so the same content always
+     * gives the same archive. The archive is written to a hidden sibling and moved
+     * into place once complete, so a file already at archivePath is replaced in one
+     * step, or left untouched if writing fails
+     * @param sourceDir Directory to archive; it becomes the archive root
+     * @param archivePath Path of the archive to create or replace
+     * @param preset XZ preset level, 0 (fastest) to 9 (smallest)
+     * @param listener Notified after every buffer of file content, or null
+     * @throws IOException if the directory cannot be read or the archive cannot be written
+     */
+    public static void createTarXz(Path sourceDir, Path archivePath, int preset, ProgressListener listener)
+            throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(sourceDir)) {
+            paths = walk.filter(path -> !path.equals(sourceDir)).sorted().collect(Collectors.toList());
+        }
+        long totalBytes = 0;
+        for (Path path : paths) {
+            if (Files.isRegularFile(path)) {
+                totalBytes += Files.size(path);
+            }
+        }
+
+        Path target = archivePath.toAbsolutePath().normalize();
+        // Hidden name, so directory watchers such as the theme index ignore it
+        Path temp = Files.createTempFile(target.getParent(), "." + target.getFileName() + ".", ".tmp");
+        boolean complete = false;
+        byte[] buffer = acquireBuffer();
+        try (OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE);
+             IndexedTarWriter tarOut = new IndexedTarWriter(fileOut, preset, Runtime.getRuntime().availableProcessors())) {
+
+            long doneBytes = 0;
+            for (Path path : paths) {
+                String entryName = sourceDir.relativize(path).toString().replace('\\', '/');
+                if (Files.isDirectory(path)) {
+                    tarOut.addDirectory(entryName);
+                    continue;
+                }
+                if (!Files.isRegularFile(path)) {
+                    continue;
+                }
+
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    // Every file gets its own XZ block, so it can be read without the others
+                    tarOut.putEntry(entryName, channel.size());
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                    int read;
+                    while ((read = channel.read(byteBuffer)) != -1) {
+                        tarOut.write(buffer, 0, read);
+                        byteBuffer.clear();
+                        doneBytes += read;
+                        if (listener != null) {
+                            listener.progress(doneBytes, totalBytes);
+                        }
+                    }
+                    tarOut.closeEntry();
+                }
+            }
+            complete = true;
+        } finally {
+            releaseBuffer(buffer);
+            if (!complete) {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        try {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a single file from a .tar.xz archive. Indexed archives (version 2 theme
+     * packages) are read by seeking to the file; others are scanned up to it
+     * @param archivePath Path to the .tar.xz archive
+     * @param entryName Name of the file within the archive, e.g. "theme.toml"
+     * @return File content, or null if the archive has no such file
+     */
+    public static byte[] readEntry(Path archivePath, String entryName) throws IOException {
+        try (IndexedTarReader reader = IndexedTarReader.open(archivePath)) {
+            if (reader != null) {
+                return reader.read(entryName);
+            }
+        }
+
+        byte[][] result = new byte[1][];
+        readTarXz(archivePath, (name, size, content) -> {
+            if (!name.equals(entryName)) {
+                return true;
+            }
+            result[0] = content.readAllBytes();
+            return false;
+        });
+        return result[0];
+    }
+
+    /**
+     * Normalizes an entry name to a relative path with forward slashes
+     * @param name Entry name as stored in the archive
+     * @return Name without leading "./" and trailing "/"
+     * @throws IOException if the name is absolute or leaves the archive root
+     */
+    public static String normalizeEntryName(String name) throws IOException {
+        String normalized = name.replace('\\', '/');
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if (normalized.startsWith("/") || normalized.equals("..") || normalized.startsWith("../")
+                || normalized.contains("/../") || normalized.endsWith("/..")
+                || (normalized.length() > 1 && normalized.charAt(1) == ':')) {
+            throw new IOException("Entry is outside of the archive: " + name);
+        }
+        return normalized;
+    }
+
+    /**
+     * Resolves an entry below a directory, rejecting anything that ends up outside of it
+     */
+    private static Path resolveEntry(Path root, String name) throws IOException {
+        Path target = root.resolve(name).normalize();
+        if (!target.startsWith(root) || target.equals(root)) {
+            throw new IOException("Entry is outside of target directory: " + name);
+        }
+        return target;
+    }
+
+    /**
+     * Writes a stream to a file through its channel, using a pooled buffer
+     */
+    private static void writeFile(InputStream content, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(content, channel, null, 0);
+        }
+    }
+
+    /**
+     * Writes an entry to a new file unless an existing file already has the same
+     * content, in which case the existing file is linked instead. The entry is
+     * compared with the existing file while it is decompressed, so it is only
+     * read once either way
+     * @param content Entry content
+     * @param size Entry size
+     * @param existing File the entry would replace; may not exist
+     * @param target File to create
+     * @return true if the content was unchanged and the existing file was reused
+     */
+    private static boolean writeIfChanged(InputStream content, long size, Path existing, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        if (!Files.isRegularFile(existing, LinkOption.NOFOLLOW_LINKS) || Files.size(existing) != size) {
+            writeFile(content, target);
+            return false;
+        }
+
+        byte[] buffer = acquireBuffer();
+        byte[] existingBuffer = acquireBuffer();
+        try (FileChannel existingChannel = FileChannel.open(existing, StandardOpenOption.READ)) {
+            long matched = 0;
+            int read;
+            while ((read = content.readNBytes(buffer, 0, buffer.length)) > 0) {
+                ByteBuffer existingBytes = ByteBuffer.wrap(existingBuffer, 0, read);
+                while (existingBytes.hasRemaining() && existingChannel.read(existingBytes) != -1) {
+                    // Fill the comparison buffer
+                }
+                if (existingBytes.hasRemaining() || !Arrays.equals(buffer, 0, read, existingBuffer, 0, read)) {
+                    // Changed: the matching prefix is copied file to file, the rest comes from the entry
+                    try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW,
+                            StandardOpenOption.WRITE)) {
+                        long copied = 0;
+                        while (copied < matched) {
+                            copied += existingChannel.transferTo(copied, matched - copied, channel);
+                        }
+                        channel.position(matched);
+                        writeFully(content, channel, buffer, read);
+                    }
+                    return false;
+                }
+                matched += read;
+            }
+        } finally {
+            releaseBuffer(existingBuffer);
+            releaseBuffer(buffer);
+        }
+
+        try {
+            Files.createLink(target, existing);
+        } catch (UnsupportedOperationException | IOException e) {
+            // No hard links on this file system
+            Files.copy(existing, target);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the pending bytes and then the rest of a stream to a channel
+     * @param pending Bytes already read from the stream, or null
+     * @param pendingLength Number of pending bytes
+     */
+    private static void writeFully(InputStream content, FileChannel channel, byte[] pending, int pendingLength)
+            throws IOException {
+        if (pending != null) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(pending, 0, pendingLength);
+            while (byteBuffer.hasRemaining()) {
+                channel.write(byteBuffer);
+            }
+        }
+
+        byte[] buffer = acquireBuffer();
+        try {
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private static byte[] acquireBuffer() {
+        byte[] buffer = bufferPool.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    private static void releaseBuffer(byte[] buffer) {
+        // Dropped if the pool is full
+        bufferPool.offer(buffer);
+    }
+
     /**
      * Extracts a .tar.xz archive to the specified destination
      * @param archivePath Path to the .tar.xz archive
@@ -12,34 +520,23 @@ public class ArchiveReader {
      * @return true if extraction was successful, false otherwise
      */
     public static boolean extractTarXz(String archivePath, String destinationPath) {
-        // In a real implementation, this would use a library like Apache Commons Compress
-        // to handle tar.xz archives
-        // For this prototype, we'll simulate the extraction
-        
         try {
             Path source = Paths.get(archivePath);
-            Path dest = Paths.get(destinationPath);
-            
+
             if (!Files.exists(source)) {
                 System.out.println("Archive not found: " + archivePath);
                 return false;
             }
-            
-            // Create destination directory if it doesn't exist
-            Files.createDirectories(dest);
-            
+
             System.out.println("Extracting " + archivePath + " to " + destinationPath);
-            
-            // Simulate extraction process
-            // In a real implementation, actual tar.xz decompression would happen here
-            
+            extractTarXz(source, Paths.get(destinationPath));
             return true;
         } catch (Exception e) {
             System.out.println("Extraction failed: " + e.getMessage());
             return false;
         }
     }
-    
+
     /**
      * Creates a .tar.xz archive from a directory
      * @param sourceDirPath Path to the directory to archive
@@ -47,41 +544,47 @@ public class ArchiveReader {
      * @return true if creation was successful, false otherwise
      */
     public static boolean createTarXz(String sourceDirPath, String archivePath) {
-        // In a real implementation, this would use a library like Apache Commons Compress
-        // For this prototype, we'll simulate the archive creation
-        
         try {
             Path source = Paths.get(sourceDirPath);
-            Path archive = Paths.get(archivePath);
-            
+
             if (!Files.exists(source)) {
                 System.out.println("Source directory not found: " + sourceDirPath);
                 return false;
             }
-            
+
             if (!Files.isDirectory(source)) {
                 System.out.println("Source is not a directory: " + sourceDirPath);
                 return false;
             }
-            
-            // Simulate archive creation process
+
             System.out.println("Creating archive " + archivePath + " from " + sourceDirPath);
-            
+            createTarXz(source, Paths.get(archivePath), ParallelXZOutputStream.DEFAULT_PRESET, null);
             return true;
         } catch (Exception e) {
             System.out.println("Archive creation failed: " + e.getMessage());
             return false;
         }
     }
-    
+
     public static void main(String[] args) {
-        // Test the archive reader functionality
-        System.out.println("Testing Archive Reader:");
-        
-        boolean extracted = extractTarXz("theme.pmt", "extracted_theme");
-        System.out.println("Extraction successful: " + extracted);
-        
-        boolean created = createTarXz("gameboy-green", "gameboy-green.pmt");
-        System.out.println("Archive creation successful: " + created);
-    }
-}
\ No newline at end of file
+        if (args.length == 3 && "extract".equals(args[0])) {
+            System.exit(extractTarXz(args[1], args[2]) ? 0 : 1);
+        } else if (args.length == 3 && "create".equals(args[0])) {
+            System.exit(createTarXz(args[1], args[2]) ? 0 : 1);
+        } else if (args.length == 2 && "list".equals(args[0])) {
+            try {
+                readTarXz(Paths.get(args[1]), (name, size, content) -> {
+                    System.out.println(size + "\t" + name);
+                    return true;
+                });
+            } catch (IOException e) {
+                System.out.println("Listing failed: " + e.getMessage());
+                System.exit(1);
+            }
+        } else {
+            System.out.println("Usage: ArchiveReader extract <archive.pmt> <directory>");
+            System.out.println("       ArchiveReader create <directory> <archive.pmt>");
+            System.out.println("       ArchiveReader list <archive.pmt>");
+        }
+    }
+}
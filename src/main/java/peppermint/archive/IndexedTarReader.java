@@ -0,0 +1,175 @@
+package peppermint.archive;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+/**
+ * Random access to the files of a version 2 theme package written by
+ * IndexedTarWriter. Opening a package decompresses only the index, and reading
+ * a file decompresses only the XZ blocks that hold it, so a single file can be
+ * read from a large package without unpacking the rest.
+ */
+public class IndexedTarReader implements Closeable {
+    // Largest index accepted, guarding against corrupt or hostile packages
+    private static final int MAX_INDEX_BYTES = 1 << 20;
+
+    private final SeekableXZInputStream xzIn;
+    private final Map<String, long[]> entries;
+
+    private IndexedTarReader(SeekableXZInputStream xzIn, Map<String, long[]> entries) {
+        this.xzIn = xzIn;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens a package for random access
+     * @param packagePath Path to the .pmt file
+     * @return The reader, or null if the package has no index (version 1 packages)
+     * @throws IOException if the file cannot be read or is not XZ-compressed
+     */
+    public static IndexedTarReader open(Path packagePath) throws IOException {
+        SeekableXZInputStream xzIn = new SeekableXZInputStream(new SeekableFileInputStream(packagePath.toFile()));
+        try {
+            Map<String, long[]> entries = readIndex(xzIn);
+            if (entries == null) {
+                xzIn.close();
+                return null;
+            }
+            return new IndexedTarReader(xzIn, entries);
+        } catch (IOException | RuntimeException e) {
+            xzIn.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the package holds a file
+     * @param name File name relative to the package root, e.g. "theme.toml"
+     * @return true if the file exists
+     */
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Gets the names of all files in the package, in archive order
+     * @return Read-only set of file names
+     */
+    public Set<String> getEntryNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Gets the size of a file
+     * @param name File name relative to the package root
+     * @return Size in bytes, or -1 if there is no such file
+     */
+    public long getSize(String name) {
+        long[] entry = entries.get(name);
+        return entry != null ? entry[1] : -1;
+    }
+
+    /**
+     * Reads a file, decompressing only the blocks it is stored in
+     * @param name File name relative to the package root
+     * @return File content, or null if there is no such file
+     */
+    public synchronized byte[] read(String name) throws IOException {
+        long[] entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (entry[1] > Integer.MAX_VALUE - 8) {
+            throw new IOException("Entry is too large to read into memory: " + name);
+        }
+
+        xzIn.seek(entry[0]);
+        byte[] content = xzIn.readNBytes((int) entry[1]);
+        if (content.length != entry[1]) {
+            throw new EOFException("Theme package is truncated at entry: " + name);
+        }
+        return content;
+    }
+
+    /**
+     * Reads a file as UTF-8 text
+     * @param name File name relative to the package root
+     * @return File content, or null if there is no such file
+     */
+    public String getText(String name) throws IOException {
+        byte[] content = read(name);
+        return content != null ? new String(content, StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        xzIn.close();
+    }
+
+    /**
+     * Reads the index from the second to last block, where IndexedTarWriter puts it
+     * @return File names mapped to {offset, size}, or null if the package has no index
+     */
+    private static Map<String, long[]> readIndex(SeekableXZInputStream xzIn) throws IOException {
+        int blockCount = xzIn.getBlockCount();
+        if (blockCount < 2) {
+            return null;
+        }
+
+        xzIn.seekToBlock(blockCount - 2);
+        byte[] header = xzIn.readNBytes(512);
+        if (header.length != 512) {
+            return null;
+        }
+        TarArchiveEntry indexEntry;
+        try {
+            indexEntry = new TarArchiveEntry(header);
+        } catch (IllegalArgumentException e) {
+            // Not a tar header, so this block is file data of a version 1 package
+            return null;
+        }
+        if (!IndexedTarWriter.INDEX_ENTRY.equals(indexEntry.getName())
+                || indexEntry.getSize() <= 0 || indexEntry.getSize() > MAX_INDEX_BYTES) {
+            return null;
+        }
+
+        byte[] indexBytes = xzIn.readNBytes((int) indexEntry.getSize());
+        String[] lines = new String(indexBytes, StandardCharsets.UTF_8).split("\n");
+        if (!IndexedTarWriter.INDEX_MAGIC.equals(lines[0])) {
+            return null;
+        }
+
+        long length = xzIn.length();
+        Map<String, long[]> entries = new LinkedHashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split(" ", 3);
+            if (fields.length != 3 || fields[2].isEmpty()) {
+                throw new IOException("Invalid theme package index at line " + (i + 1));
+            }
+            long offset;
+            long size;
+            try {
+                offset = Long.parseLong(fields[0]);
+                size = Long.parseLong(fields[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid theme package index at line " + (i + 1));
+            }
+            if (offset < 0 || size < 0 || offset + size > length) {
+                throw new IOException("Theme package index points outside of the package: " + fields[2]);
+            }
+            entries.put(fields[2], new long[] {offset, size});
+        }
+        return entries;
+    }
+}
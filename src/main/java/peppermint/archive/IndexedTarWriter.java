@@ -0,0 +1,167 @@
+package peppermint.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+/**
+ * Writes a version 2 theme package: an ordinary tar.xz in which every file starts
+ * a new XZ block, followed by an index entry listing where each file's data
+ * starts in the uncompressed tar. IndexedTarReader uses the index to decompress
+ * only the blocks of the files it reads. Readers that don't know the format see
+ * a regular tar.xz with one extra file, INDEX_ENTRY.
+ *
+ * Layout of the uncompressed tar, one XZ block (or more for large files) per line:
+ * <pre>
+ *   [header][data of file 1]
+ *   [header][data of file 2]
+ *   ...
+ *   [header][index]          always the second to last block
+ *   [end-of-archive records] always the last block
+ * </pre>
+ * The index is UTF-8 text: the line INDEX_MAGIC, then one line per file holding
+ * its data offset, size and name, separated by single spaces.
+ */
+public class IndexedTarWriter implements Closeable {
+    public static final String INDEX_ENTRY = ".pmt-index";
+    public static final String INDEX_MAGIC = "PMT-INDEX 2";
+
+    private final ParallelXZOutputStream xzOut;
+    private final TarArchiveOutputStream tarOut;
+    private final StringBuilder index = new StringBuilder(INDEX_MAGIC).append('\n');
+    private final List<String> names = new ArrayList<>();
+    private boolean entryOpen;
+
+    /**
+     * Creates a writer using the default XZ preset and one thread per CPU
+     * @param out Stream receiving the package; closed by close()
+     */
+    public IndexedTarWriter(OutputStream out) throws IOException {
+        this(out, ParallelXZOutputStream.DEFAULT_PRESET, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a writer
+     * @param out Stream receiving the package; closed by close()
+     * @param preset XZ preset level, 0 (fastest) to 9 (smallest)
+     * @param threads Number of compression threads; files are compressed in parallel
+     */
+    public IndexedTarWriter(OutputStream out, int preset, int threads) throws IOException {
+        this.xzOut = new ParallelXZOutputStream(out, preset, ParallelXZOutputStream.DEFAULT_BLOCK_SIZE, threads);
+        // 512-byte tar blocks, so every record reaches the XZ stream as soon as it is written
+        this.tarOut = new TarArchiveOutputStream(xzOut, 512);
+        this.tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+    }
+
+    /**
+     * Adds a directory entry
+     * @param name Directory name relative to the package root, with forward slashes
+     */
+    public void addDirectory(String name) throws IOException {
+        tarOut.putArchiveEntry(new TarArchiveEntry(name.endsWith("/") ? name : name + "/"));
+        tarOut.closeArchiveEntry();
+    }
+
+    /**
+     * Starts a file entry. Its content is written with write() and ended with closeEntry()
+     * @param name File name relative to the package root, with forward slashes
+     * @param size Exact number of bytes that will be written
+     */
+    public void putEntry(String name, long size) throws IOException {
+        if (name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0 || name.equals(INDEX_ENTRY)) {
+            throw new IllegalArgumentException("Invalid entry name: " + name);
+        }
+        xzOut.endBlock();
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(size);
+        tarOut.putArchiveEntry(entry);
+
+        // The header is written through, so this is where the file's data starts
+        index.append(xzOut.getBytesWritten()).append(' ').append(size).append(' ').append(name).append('\n');
+        names.add(name);
+        entryOpen = true;
+    }
+
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        tarOut.write(buffer, offset, length);
+    }
+
+    public void closeEntry() throws IOException {
+        tarOut.closeArchiveEntry();
+        entryOpen = false;
+    }
+
+    /**
+     * Adds a file entry with the given content
+     * @param name File name relative to the package root
+     * @param content File content
+     */
+    public void addEntry(String name, byte[] content) throws IOException {
+        putEntry(name, content.length);
+        write(content, 0, content.length);
+        closeEntry();
+    }
+
+    /**
+     * Adds a file entry copied from disk
+     * @param name File name relative to the package root
+     * @param file File to copy
+     */
+    public void addFile(String name, Path file) throws IOException {
+        putEntry(name, Files.size(file));
+        try (InputStream in = Files.newInputStream(file)) {
+            in.transferTo(tarOut);
+        }
+        closeEntry();
+    }
+
+    /**
+     * Gets the number of uncompressed bytes written so far
+     * @return Byte count
+     */
+    public long getBytesWritten() {
+        return xzOut.getBytesWritten();
+    }
+
+    /**
+     * Gets the names of the files added so far
+     * @return File names in archive order
+     */
+    public List<String> getEntryNames() {
+        return names;
+    }
+
+    /**
+     * Writes the index and the end of the archive, and closes the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (entryOpen) {
+                throw new IOException("Entry was not closed before closing the package");
+            }
+
+            byte[] indexBytes = index.toString().getBytes(StandardCharsets.UTF_8);
+            xzOut.endBlock();
+            TarArchiveEntry entry = new TarArchiveEntry(INDEX_ENTRY);
+            entry.setSize(indexBytes.length);
+            tarOut.putArchiveEntry(entry);
+            tarOut.write(indexBytes);
+            tarOut.closeArchiveEntry();
+            xzOut.endBlock();
+
+            tarOut.finish();
+        } finally {
+            tarOut.close();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package peppermint.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.UnsupportedOptionsException;
+import org.tukaani.xz.XZ;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * XZ compressor that splits its input into fixed-size blocks and compresses them
+ * on several threads. Every block becomes a complete XZ stream of its own, and
+ * the streams are written in order, which the .xz format defines as one
+ * concatenated file. Readers must therefore decompress concatenated streams, e.g.
+ * XZCompressorInputStream(in, true); input that fits into a single block produces
+ * an ordinary single-stream .xz file.
+ *
+ * At most two blocks per thread are buffered at a time, so memory use is bounded
+ * no matter how much is written.
+ */
+public class ParallelXZOutputStream extends OutputStream {
+    public static final int DEFAULT_PRESET = LZMA2Options.PRESET_DEFAULT;
+    public static final int DEFAULT_BLOCK_SIZE = 2 << 20;
+
+    // Block buffers start small and grow up to the block size, so short blocks stay cheap
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final LZMA2Options options;
+    private final int blockSize;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockLength;
+    private long bytesWritten;
+    private boolean closed;
+
+    /**
+     * Creates a compressor using the default preset, block size and one thread per CPU
+     * @param out Stream receiving the compressed data; closed by close()
+     */
+    public ParallelXZOutputStream(OutputStream out) throws IOException {
+        this(out, DEFAULT_PRESET, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a compressor
+     * @param out Stream receiving the compressed data; closed by close()
+     * @param preset XZ preset level, 0 (fastest) to 9 (smallest)
+     * @param blockSize Uncompressed bytes per block. Smaller blocks parallelize better, larger blocks compress better
+     * @param threads Number of compression threads; 1 compresses on the calling thread
+     * @throws UnsupportedOptionsException if the preset is out of range
+     */
+    public ParallelXZOutputStream(OutputStream out, int preset, int blockSize, int threads) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+
+        this.out = out;
+        this.options = new LZMA2Options(preset);
+        // A dictionary larger than a block is never used, so don't allocate it
+        if (options.getDictSize() > blockSize) {
+            options.setDictSize(Math.max(LZMA2Options.DICT_SIZE_MIN, blockSize));
+        }
+        this.blockSize = blockSize;
+        this.maxPending = threads * 2;
+        this.block = new byte[Math.min(blockSize, INITIAL_BUFFER_SIZE)];
+
+        if (threads > 1) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "PepperMint XZ compressor-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (blockLength == block.length) {
+            growBlock();
+        }
+        block[blockLength++] = (byte) b;
+        bytesWritten++;
+        if (blockLength == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            if (blockLength == block.length) {
+                growBlock();
+            }
+            int count = Math.min(length, block.length - blockLength);
+            System.arraycopy(buffer, offset, block, blockLength, count);
+            blockLength += count;
+            bytesWritten += count;
+            offset += count;
+            length -= count;
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of uncompressed bytes written so far
+     * @return Byte count
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Ends the current block early, so the data written next starts a new block.
+     * Block boundaries are where SeekableXZInputStream can start decompressing
+     */
+    public void endBlock() throws IOException {
+        ensureOpen();
+        if (blockLength > 0) {
+            submitBlock();
+        }
+    }
+
+    /**
+     * Compresses and writes everything buffered so far. Ends the current block
+     * early, so frequent flushing costs compression ratio
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (blockLength > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeOldest();
+        }
+        out.flush();
+    }
+
+    /**
+     * Finishes compression and closes the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            // An empty input still becomes a valid, empty .xz file
+            if (blockLength > 0 || bytesWritten == 0) {
+                submitBlock();
+            }
+            while (!pending.isEmpty()) {
+                writeOldest();
+            }
+        } finally {
+            closed = true;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        block = new byte[Math.min(blockSize, INITIAL_BUFFER_SIZE)];
+        blockLength = 0;
+
+        if (executor == null) {
+            out.write(compress(data, length));
+            return;
+        }
+        if (pending.size() >= maxPending) {
+            writeOldest();
+        }
+        pending.add(executor.submit(() -> compress(data, length)));
+    }
+
+    private void growBlock() {
+        block = Arrays.copyOf(block, Math.min(blockSize, block.length * 2));
+    }
+
+    private void writeOldest() throws IOException {
+        Future<byte[]> oldest = pending.poll();
+        try {
+            out.write(oldest.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private byte[] compress(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 1024);
+        try (XZOutputStream xzOut = new XZOutputStream(compressed, options, XZ.CHECK_CRC64)) {
+            xzOut.write(data, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
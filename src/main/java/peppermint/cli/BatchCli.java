@@ -0,0 +1,206 @@
+package peppermint.cli;
+
+import peppermint.gens.GenerationOptions;
+import peppermint.gens.PresetArchive;
+import peppermint.gens.PresetFormat;
+import peppermint.gens.PresetGenerator;
+import peppermint.gens.PresetWriter;
+import peppermint.gens.RunSeed;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Headless batch mode. Generates presets and streams them to stdout or a file
+ * without touching AWT, Swing, FlatLaf or the theme system, so it runs on
+ * headless build agents at plain JVM startup cost.
+ *
+ * Usage: java -jar PepperMint.jar --batch [options]
+ */
+public class BatchCli {
+    private static final String USAGE =
+        "Usage: PepperMint --batch [options]\n" +
+        "  --count N              Number of presets to generate (default 1)\n" +
+        "  --seed CODE            Batch seed; the same seed and options give the same output\n" +
+        "  --slots N              Number of seed slots, 6-10 (default 8)\n" +
+        "  --levels N             Number of levels, up to 12 (default 12)\n" +
+        "  --endless              Generate for endless modes (no levels)\n" +
+        "  --pattern-per-level    Generate a pattern for every level (default)\n" +
+        "  --single-pattern       Generate one pattern for all levels\n" +
+        "  --format FORMAT        ndjson, csv or binary (default ndjson)\n" +
+        "  --output FILE          Write to FILE instead of stdout\n" +
+        "  --archive FILE         Append to the preset archive FILE instead of writing output\n" +
+        "  --help                 Show this help";
+
+    // Presets generated per bulk call; keeps memory flat for very large counts
+    private static final int CHUNK_SIZE = 16_384;
+
+    private long count = 1;
+    private Long seed;
+    private int slots = 8;
+    private int levels = 12;
+    private boolean endless;
+    private boolean patternPerLevel = true;
+    private PresetFormat format = PresetFormat.NDJSON;
+    private String output;
+    private String archive;
+
+    /**
+     * Checks whether the command line asks for batch mode
+     * @param args Command line arguments
+     * @return true if the first argument is --batch or --headless
+     */
+    public static boolean isBatchInvocation(String[] args) {
+        return args.length > 0 && ("--batch".equals(args[0]) || "--headless".equals(args[0]));
+    }
+
+    /**
+     * Runs batch mode
+     * @param args Command line arguments, starting with --batch
+     * @return Process exit code
+     */
+    public static int run(String[] args) {
+        BatchCli cli = new BatchCli();
+        try {
+            if (!cli.parse(args)) {
+                System.out.println(USAGE);
+                return 0;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            cli.generate();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error writing presets: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Parses the command line
+     * @return false if only the help text was requested
+     */
+    private boolean parse(String[] args) {
+        for (int i = isBatchInvocation(args) ? 1 : 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--help":
+                case "-h":
+                    return false;
+                case "--count":
+                    count = parseLong(arg, valueOf(args, ++i, arg));
+                    if (count < 0) {
+                        throw new IllegalArgumentException("--count must not be negative");
+                    }
+                    break;
+                case "--seed":
+                    seed = RunSeed.decode(valueOf(args, ++i, arg));
+                    break;
+                case "--slots":
+                    slots = parseInt(arg, valueOf(args, ++i, arg));
+                    break;
+                case "--levels":
+                    levels = parseInt(arg, valueOf(args, ++i, arg));
+                    break;
+                case "--endless":
+                    endless = true;
+                    break;
+                case "--pattern-per-level":
+                    patternPerLevel = true;
+                    break;
+                case "--single-pattern":
+                    patternPerLevel = false;
+                    break;
+                case "--format":
+                    format = PresetFormat.fromName(valueOf(args, ++i, arg));
+                    break;
+                case "--output":
+                case "-o":
+                    output = valueOf(args, ++i, arg);
+                    break;
+                case "--archive":
+                    archive = valueOf(args, ++i, arg);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (slots < 6 || slots > 10) {
+            throw new IllegalArgumentException("--slots must be between 6 and 10");
+        }
+        if (!endless && (levels < 1 || levels > 12)) {
+            throw new IllegalArgumentException("--levels must be between 1 and 12");
+        }
+        return true;
+    }
+
+    private void generate() throws IOException {
+        GenerationOptions options = new GenerationOptions(levels, !endless, slots, patternPerLevel);
+        PresetGenerator generator = new PresetGenerator();
+        SplittableRandom chunkSeeds = new SplittableRandom(seed != null ? seed : RunSeed.newSeed());
+
+        if (archive != null) {
+            try (PresetArchive presetArchive = PresetArchive.open(Paths.get(archive))) {
+                long remaining = count;
+                while (remaining > 0) {
+                    int chunk = (int) Math.min(remaining, CHUNK_SIZE);
+                    presetArchive.appendAll(generator.generatePresets(chunk, options, chunkSeeds.nextLong()));
+                    remaining -= chunk;
+                }
+            }
+            return;
+        }
+
+        WritableByteChannel channel = output != null
+            ? FileChannel.open(Paths.get(output), StandardOpenOption.CREATE,
+                               StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+            : new FileOutputStream(FileDescriptor.out).getChannel();
+
+        try (PresetWriter writer = new PresetWriter(channel, format)) {
+            long remaining = count;
+            while (remaining > 0) {
+                int chunk = (int) Math.min(remaining, CHUNK_SIZE);
+                writer.writeAll(generator.generatePresets(chunk, options, chunkSeeds.nextLong()));
+                remaining -= chunk;
+            }
+        }
+    }
+
+    private static String valueOf(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " requires a value");
+        }
+        return args[index];
+    }
+
+    private static long parseLong(String option, String value) {
+        try {
+            return Long.parseLong(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number: " + value);
+        }
+    }
+
+    private static int parseInt(String option, String value) {
+        long number = parseLong(option, value);
+        if (number != (int) number) {
+            throw new IllegalArgumentException(option + " is out of range: " + value);
+        }
+        return (int) number;
+    }
+}
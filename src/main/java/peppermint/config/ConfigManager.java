@@ -3,110 +3,347 @@ package peppermint.config;
 import peppermint.themes.ThemeManager;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Manages application configuration, specifically for storing and retrieving theme and theme mode settings.
+ * Manages application configuration: the theme and theme mode, generator options
+ * and window geometry, stored in sections of config.toml.
+ *
+ * The file is parsed once into an immutable TomlDocument snapshot held in a
+ * volatile field, so reads never lock and always see a consistent set of values.
+ * A change creates a new snapshot and notifies the registered listeners.
+ *
+ * Changes are written behind: setters only mark the configuration as changed, and a
+ * background thread writes it once things have been quiet for a moment, so a burst
+ * of changes costs a single write. Writes go to a temporary file that then replaces
+ * config.toml, so the file is never seen half-written. A single shutdown hook
+ * flushes the instances that still have pending changes; other instances are not
+ * kept alive by it. The application shares one instance through AppContext.
  */
 public class ConfigManager {
+    public static final String THEME = "main.current_theme";
+    public static final String THEME_MODE = "main.current_theme_mode";
+    public static final String SEED_SLOTS = "generator.seed_slots";
+    public static final String PATTERN_PER_LEVEL = "generator.pattern_per_level";
+    public static final String ENDLESS = "generator.endless";
+    public static final String LAST_SEED = "generator.last_seed";
+    public static final String WINDOW_X = "window.x";
+    public static final String WINDOW_Y = "window.y";
+    public static final String WINDOW_WIDTH = "window.width";
+    public static final String WINDOW_HEIGHT = "window.height";
+    public static final String WINDOW_MAXIMIZED = "window.maximized";
+
     private static final String CONFIG_FILE_PATH = "config.toml";
-    private String currentTheme;
-    private String currentThemeMode;
+    private static final String DEFAULT_THEME = "default";
+    private static final String DEFAULT_THEME_MODE = "light";
+    private static final long SAVE_DELAY_MS = 250;
+
+    private static final ScheduledExecutorService saveScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PepperMint config writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Instances with changes not written yet; flushed by the shutdown hook
+    private static final Set<ConfigManager> pendingInstances = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            boolean saved = false;
+            for (ConfigManager configManager : pendingInstances) {
+                saved |= configManager.flush();
+            }
+            if (saved) {
+                System.out.println("Configuration saved on shutdown.");
+            }
+        }, "PepperMint config flush"));
+    }
+
+    /**
+     * Notified after a value changed, on the thread that changed it
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param key Dotted key of the value, e.g. ConfigManager.THEME
+         * @param oldValue Previous value, or null if it was not set
+         * @param newValue New value, or null if it was removed
+         */
+        void configChanged(String key, Object oldValue, Object newValue);
+    }
+
+    private volatile TomlDocument snapshot = TomlDocument.EMPTY;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private boolean dirty;
+    private ScheduledFuture<?> pendingSave;
 
     /**
      * Initializes the ConfigManager and loads settings from the config file.
+     * Prefer the shared instance from AppContext.getConfigManager()
      */
     public ConfigManager() {
         loadConfig();
     }
 
     /**
-     * Loads configuration from config.toml file.
+     * Loads configuration from config.toml file. Listeners are notified of every
+     * value that differs from the previous snapshot.
      */
     public void loadConfig() {
         Path configPath = Paths.get(CONFIG_FILE_PATH);
-        
+
         if (!Files.exists(configPath)) {
             // Create default config file
             createDefaultConfig();
             return;
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(configPath)) {
-            String line;
-            boolean inMainSection = false;
-            
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                
-                // Check for section header [main]
-                if (line.equals("[main]")) {
-                    inMainSection = true;
-                    continue;
-                }
-                
-                // Skip if not in main section or if it's a comment
-                if (!inMainSection || line.startsWith("#")) {
-                    continue;
-                }
-                
-                // Parse key=value pairs
-                if (line.contains("=")) {
-                    String[] parts = line.split("=", 2);
-                    if (parts.length == 2) {
-                        String key = parts[0].trim();
-                        String value = parts[1].trim();
-                        
-                        // Remove quotes if present
-                        if (value.startsWith("\"") && value.endsWith("\"")) {
-                            value = value.substring(1, value.length() - 1);
-                        }
-                        
-                        switch (key) {
-                            case "current_theme":
-                                this.currentTheme = value;
-                                break;
-                            case "current_theme_mode":
-                                this.currentThemeMode = value;
-                                break;
-                        }
-                    }
-                }
+        TomlDocument loaded;
+        try {
+            loaded = TomlParser.parse(Files.readString(configPath));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading config file: " + e.getMessage());
+            // Fall back to defaults on error
+            loaded = TomlDocument.EMPTY;
+        }
+
+        TomlDocument previous;
+        synchronized (this) {
+            previous = snapshot;
+            snapshot = loaded;
+        }
+        for (String key : previous.keySet()) {
+            if (!loaded.contains(key)) {
+                fireChanged(key, previous.get(key), null);
             }
-            
-            // If no values were loaded, set defaults
-            if (this.currentTheme == null) {
-                this.currentTheme = "default";
+        }
+        for (String key : loaded.keySet()) {
+            if (!loaded.get(key).equals(previous.get(key))) {
+                fireChanged(key, previous.get(key), loaded.get(key));
             }
-            
-            if (this.currentThemeMode == null) {
-                this.currentThemeMode = "light";
+        }
+    }
+
+    /**
+     * Gets the current snapshot of all values. It never changes; later changes
+     * create a new snapshot
+     * @return The configuration as a TOML document
+     */
+    public TomlDocument getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets a string value
+     * @param key Dotted key, e.g. ConfigManager.THEME
+     * @param defaultValue Value returned if the key is missing or not a string
+     * @return The value
+     */
+    public String getString(String key, String defaultValue) {
+        return snapshot.getString(key, defaultValue);
+    }
+
+    /**
+     * Gets a boolean value
+     * @param key Dotted key
+     * @param defaultValue Value returned if the key is missing or not a boolean
+     * @return The value
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return snapshot.getBoolean(key, defaultValue);
+    }
+
+    /**
+     * Gets an integer value
+     * @param key Dotted key
+     * @param defaultValue Value returned if the key is missing, not an integer or out of int range
+     * @return The value
+     */
+    public int getInt(String key, int defaultValue) {
+        long value = snapshot.getLong(key, defaultValue);
+        return value == (int) value ? (int) value : defaultValue;
+    }
+
+    /**
+     * Gets an integer value
+     * @param key Dotted key
+     * @param defaultValue Value returned if the key is missing or not an integer
+     * @return The value
+     */
+    public long getLong(String key, long defaultValue) {
+        return snapshot.getLong(key, defaultValue);
+    }
+
+    /**
+     * Sets a string value and schedules saving the configuration
+     * @param key Dotted key
+     * @param value New value, or null to remove the key
+     */
+    public void setString(String key, String value) {
+        set(key, value);
+    }
+
+    /**
+     * Sets a boolean value and schedules saving the configuration
+     * @param key Dotted key
+     * @param value New value
+     */
+    public void setBoolean(String key, boolean value) {
+        set(key, value);
+    }
+
+    /**
+     * Sets an integer value and schedules saving the configuration
+     * @param key Dotted key
+     * @param value New value
+     */
+    public void setLong(String key, long value) {
+        set(key, value);
+    }
+
+    /**
+     * Registers a listener for value changes
+     * @param listener Listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Replaces one value in the snapshot. Nothing happens if the value is unchanged
+     */
+    private void set(String key, Object value) {
+        Object oldValue;
+        synchronized (this) {
+            oldValue = snapshot.get(key);
+            if (value == null ? oldValue == null : value.equals(oldValue)) {
+                return;
             }
-            
-        } catch (IOException e) {
-            System.err.println("Error reading config file: " + e.getMessage());
-            // Set defaults on error
-            this.currentTheme = "default";
-            this.currentThemeMode = "light";
+            snapshot = snapshot.with(key, value);
+            scheduleSave();
+        }
+        fireChanged(key, oldValue, value);
+    }
+
+    private void fireChanged(String key, Object oldValue, Object newValue) {
+        for (Listener listener : listeners) {
+            listener.configChanged(key, oldValue, newValue);
         }
     }
 
     /**
-     * Saves configuration to config.toml file.
+     * Saves configuration to config.toml file right away, replacing it atomically.
      */
     public void saveConfig() {
-        try (PrintWriter writer = new PrintWriter(
-                new BufferedWriter(new FileWriter(CONFIG_FILE_PATH)))) {
-            
-            writer.println("# Application Configuration File");
-            writer.println("[main]");
-            writer.println("current_theme = \"" + this.currentTheme + "\"");
-            writer.println("current_theme_mode = \"" + this.currentThemeMode + "\"");
-            
-        } catch (IOException e) {
-            System.err.println("Error writing config file: " + e.getMessage());
+        synchronized (ConfigManager.class) {
+            synchronized (this) {
+                cancelPendingSave();
+                dirty = false;
+            }
+            writeConfig();
+            writeFinished();
+        }
+    }
+
+    /**
+     * Writes pending changes right away, if there are any. Changes are only marked
+     * as written under the class lock, so a flush racing a write in progress waits
+     * for it instead of finding nothing to do.
+     * @return true if anything was written
+     */
+    public boolean flush() {
+        synchronized (ConfigManager.class) {
+            synchronized (this) {
+                cancelPendingSave();
+                if (!dirty) {
+                    return false;
+                }
+                dirty = false;
+            }
+            writeConfig();
+            writeFinished();
+            return true;
+        }
+    }
+
+    // Leaves the shutdown hook's pending set once written, unless changed again meanwhile
+    private synchronized void writeFinished() {
+        if (!dirty) {
+            pendingInstances.remove(this);
+        }
+    }
+
+    /**
+     * Marks the configuration as changed and schedules a write, unless one is already scheduled.
+     */
+    private synchronized void scheduleSave() {
+        dirty = true;
+        pendingInstances.add(this);
+        if (pendingSave == null) {
+            pendingSave = saveScheduler.schedule(() -> {
+                synchronized (this) {
+                    pendingSave = null;
+                }
+                flush();
+            }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelPendingSave() {
+        if (pendingSave != null) {
+            pendingSave.cancel(false);
+            pendingSave = null;
+        }
+    }
+
+    /**
+     * Writes the current snapshot to a temporary file and moves it over config.toml.
+     * Synchronized on the class, so concurrent writes never interleave; the class
+     * lock is always taken before the instance lock.
+     */
+    private void writeConfig() {
+        synchronized (ConfigManager.class) {
+            Path configPath = Paths.get(CONFIG_FILE_PATH).toAbsolutePath();
+            Path tempFile = null;
+            try {
+                tempFile = Files.createTempFile(configPath.getParent(), ".config", ".tmp");
+                Files.writeString(tempFile, TomlWriter.write(snapshot, "Application Configuration File"));
+
+                try {
+                    Files.move(tempFile, configPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, configPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+                tempFile = null;
+            } catch (IOException e) {
+                System.err.println("Error writing config file: " + e.getMessage());
+            } finally {
+                if (tempFile != null) {
+                    try {
+                        Files.deleteIfExists(tempFile);
+                    } catch (IOException e) {
+                        // Leftover temp file, config.toml itself is intact
+                    }
+                }
+            }
         }
     }
 
@@ -114,27 +351,28 @@ public class ConfigManager {
      * Creates a default configuration file.
      */
     private void createDefaultConfig() {
-        this.currentTheme = "default";
-        this.currentThemeMode = "light";
+        synchronized (this) {
+            snapshot = TomlDocument.EMPTY
+                .with(THEME, DEFAULT_THEME)
+                .with(THEME_MODE, DEFAULT_THEME_MODE);
+        }
         saveConfig(); // This will create the file with default values
     }
 
     /**
-     * Sets the current theme and saves to configuration.
+     * Sets the current theme and schedules saving the configuration.
      * @param theme The theme name to set
      */
     public void setCurrentTheme(String theme) {
-        this.currentTheme = theme;
-        saveConfig();
+        setString(THEME, theme);
     }
 
     /**
-     * Sets the current theme mode and saves to configuration.
+     * Sets the current theme mode and schedules saving the configuration.
      * @param themeMode The theme mode to set
      */
     public void setCurrentThemeMode(String themeMode) {
-        this.currentThemeMode = themeMode;
-        saveConfig();
+        setString(THEME_MODE, themeMode);
     }
 
     /**
@@ -142,7 +380,7 @@ public class ConfigManager {
      * @return The current theme name
      */
     public String getCurrentTheme() {
-        return this.currentTheme;
+        return getString(THEME, DEFAULT_THEME);
     }
 
     /**
@@ -150,6 +388,6 @@ public class ConfigManager {
      * @return The current theme mode
      */
     public String getCurrentThemeMode() {
-        return this.currentThemeMode;
+        return getString(THEME_MODE, DEFAULT_THEME_MODE);
     }
-}
\ No newline at end of file
+}
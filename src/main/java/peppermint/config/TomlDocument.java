@@ -0,0 +1,127 @@
+package peppermint.config;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable result of TomlParser. Values are looked up by their full dotted key,
+ * e.g. "theme.dark_mode" for dark_mode in the [theme] table.
+ */
+public final class TomlDocument {
+    public static final TomlDocument EMPTY = new TomlDocument(Collections.emptyMap());
+
+    private final Map<String, Object> values;
+
+    TomlDocument(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * Creates a copy of this document with one value changed. New keys are added
+     * at the end of their table
+     * @param key Dotted key
+     * @param value String, Boolean, Long, Double or List value, or null to remove the key
+     * @return The new document; this one is unchanged
+     */
+    public TomlDocument with(String key, Object value) {
+        Map<String, Object> copy = new LinkedHashMap<>(values);
+        if (value == null) {
+            copy.remove(key);
+        } else {
+            copy.put(key, value);
+        }
+        return new TomlDocument(Collections.unmodifiableMap(copy));
+    }
+
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * Gets a raw value
+     * @param key Dotted key
+     * @return String, Boolean, Long, Double or List value, or null if the key is not present
+     */
+    public Object get(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Gets a string value
+     * @param key Dotted key
+     * @param defaultValue Value returned if the key is missing or not a string
+     * @return The value
+     */
+    public String getString(String key, String defaultValue) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    /**
+     * Gets a boolean value
+     * @param key Dotted key
+     * @param defaultValue Value returned if the key is missing or not a boolean
+     * @return The value
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    /**
+     * Gets an integer value
+     * @param key Dotted key
+     * @param defaultValue Value returned if the key is missing or not an integer
+     * @return The value
+     */
+    public long getLong(String key, long defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    /**
+     * Gets a float value. Integers are widened
+     * @param key Dotted key
+     * @param defaultValue Value returned if the key is missing or not a number
+     * @return The value
+     */
+    public double getDouble(String key, double defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
+
+    /**
+     * Gets an array value
+     * @param key Dotted key
+     * @return Read-only list, or null if the key is missing or not an array
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> getList(String key) {
+        Object value = values.get(key);
+        return value instanceof List ? (List<Object>) value : null;
+    }
+
+    /**
+     * Gets all keys in document order
+     * @return Read-only set of dotted keys
+     */
+    public Set<String> keySet() {
+        return values.keySet();
+    }
+
+    /**
+     * Gets all values
+     * @return Read-only map of dotted keys to values, in document order
+     */
+    public Map<String, Object> asMap() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
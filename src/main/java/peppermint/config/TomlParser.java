@@ -0,0 +1,361 @@
+package peppermint.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass parser for the TOML subset used by PepperMint's config, theme and
+ * manifest files. The input is scanned once, character by character; keys and
+ * values are cut straight out of the source, and a scratch buffer is only used
+ * for strings that contain escapes.
+ *
+ * Supported: comments, [tables] and dotted table names, bare, quoted and dotted
+ * keys, basic and literal strings, integers (including 0x/0o/0b and '_'
+ * separators), floats, booleans and arrays of those values. Values are stored
+ * under their full dotted key, e.g. "colors.primary".
+ */
+public final class TomlParser {
+    private final String source;
+    private final int length;
+    private final Map<String, Object> values = new LinkedHashMap<>();
+    private final StringBuilder scratch = new StringBuilder();
+    private String tablePrefix = "";
+    private int pos;
+    private int line = 1;
+
+    private TomlParser(String source) {
+        this.source = source;
+        this.length = source.length();
+    }
+
+    /**
+     * Parses a TOML document
+     * @param toml TOML source
+     * @return The parsed document
+     * @throws IllegalArgumentException if the source is not valid TOML or uses unsupported features
+     */
+    public static TomlDocument parse(String toml) {
+        TomlParser parser = new TomlParser(toml);
+        parser.parseDocument();
+        return new TomlDocument(Collections.unmodifiableMap(parser.values));
+    }
+
+    private void parseDocument() {
+        while (true) {
+            skipBlank(true);
+            if (pos >= length) {
+                return;
+            }
+            if (source.charAt(pos) == '[') {
+                parseTableHeader();
+            } else {
+                parseKeyValue();
+            }
+            expectLineEnd();
+        }
+    }
+
+    private void parseTableHeader() {
+        pos++; // [
+        if (pos < length && source.charAt(pos) == '[') {
+            throw error("Arrays of tables are not supported");
+        }
+        skipBlank(false);
+        String table = parseKey();
+        skipBlank(false);
+        expect(']');
+        tablePrefix = table + ".";
+    }
+
+    private void parseKeyValue() {
+        String key = tablePrefix + parseKey();
+        skipBlank(false);
+        expect('=');
+        skipBlank(false);
+        Object value = parseValue();
+        if (values.putIfAbsent(key, value) != null) {
+            throw error("Duplicate key: " + key);
+        }
+    }
+
+    /**
+     * Parses a bare, quoted or dotted key
+     */
+    private String parseKey() {
+        String key = parseSimpleKey();
+        while (true) {
+            int mark = pos;
+            skipBlank(false);
+            if (pos < length && source.charAt(pos) == '.') {
+                pos++;
+                skipBlank(false);
+                key = key + "." + parseSimpleKey();
+            } else {
+                pos = mark;
+                return key;
+            }
+        }
+    }
+
+    private String parseSimpleKey() {
+        if (pos >= length) {
+            throw error("Expected a key");
+        }
+        char c = source.charAt(pos);
+        if (c == '"') {
+            return parseBasicString();
+        }
+        if (c == '\'') {
+            return parseLiteralString();
+        }
+        int start = pos;
+        while (pos < length && isBareKeyChar(source.charAt(pos))) {
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Expected a key");
+        }
+        return source.substring(start, pos);
+    }
+
+    private Object parseValue() {
+        if (pos >= length) {
+            throw error("Expected a value");
+        }
+        char c = source.charAt(pos);
+        switch (c) {
+            case '"':
+                return parseBasicString();
+            case '\'':
+                return parseLiteralString();
+            case '[':
+                return parseArray();
+            case 't':
+                return parseKeyword("true", Boolean.TRUE);
+            case 'f':
+                return parseKeyword("false", Boolean.FALSE);
+            case '{':
+                throw error("Inline tables are not supported");
+            default:
+                if (c == '+' || c == '-' || (c >= '0' && c <= '9')) {
+                    return parseNumber();
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Object parseKeyword(String keyword, Object value) {
+        if (!source.startsWith(keyword, pos)) {
+            throw error("Unexpected value");
+        }
+        pos += keyword.length();
+        return value;
+    }
+
+    private List<Object> parseArray() {
+        pos++; // [
+        List<Object> array = new ArrayList<>();
+        while (true) {
+            skipBlank(true);
+            if (pos >= length) {
+                throw error("Unterminated array");
+            }
+            if (source.charAt(pos) == ']') {
+                pos++;
+                return Collections.unmodifiableList(array);
+            }
+            array.add(parseValue());
+            skipBlank(true);
+            if (pos < length && source.charAt(pos) == ',') {
+                pos++;
+            } else if (pos >= length || source.charAt(pos) != ']') {
+                throw error("Expected ',' or ']' in array");
+            }
+        }
+    }
+
+    private String parseBasicString() {
+        if (source.startsWith("\"\"\"", pos)) {
+            throw error("Multi-line strings are not supported");
+        }
+        pos++; // opening quote
+        int start = pos;
+
+        // Fast path: no escapes, cut the value straight out of the source
+        while (pos < length) {
+            char c = source.charAt(pos);
+            if (c == '"') {
+                return source.substring(start, pos++);
+            }
+            if (c == '\\') {
+                break;
+            }
+            if (c == '\n') {
+                throw error("Unterminated string");
+            }
+            pos++;
+        }
+
+        scratch.setLength(0);
+        scratch.append(source, start, pos);
+        while (pos < length) {
+            char c = source.charAt(pos++);
+            if (c == '"') {
+                return scratch.toString();
+            }
+            if (c == '\n') {
+                break;
+            }
+            if (c != '\\') {
+                scratch.append(c);
+                continue;
+            }
+            if (pos >= length) {
+                break;
+            }
+            char escape = source.charAt(pos++);
+            switch (escape) {
+                case '"': scratch.append('"'); break;
+                case '\\': scratch.append('\\'); break;
+                case 'n': scratch.append('\n'); break;
+                case 't': scratch.append('\t'); break;
+                case 'r': scratch.append('\r'); break;
+                case 'b': scratch.append('\b'); break;
+                case 'f': scratch.append('\f'); break;
+                case 'u': scratch.appendCodePoint(parseUnicodeEscape(4)); break;
+                case 'U': scratch.appendCodePoint(parseUnicodeEscape(8)); break;
+                default: throw error("Invalid escape sequence \\" + escape);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private int parseUnicodeEscape(int digits) {
+        if (pos + digits > length) {
+            throw error("Invalid unicode escape");
+        }
+        try {
+            int codePoint = Integer.parseInt(source, pos, pos + digits, 16);
+            pos += digits;
+            return codePoint;
+        } catch (NumberFormatException e) {
+            throw error("Invalid unicode escape");
+        }
+    }
+
+    private String parseLiteralString() {
+        if (source.startsWith("'''", pos)) {
+            throw error("Multi-line strings are not supported");
+        }
+        int start = ++pos;
+        while (pos < length) {
+            char c = source.charAt(pos);
+            if (c == '\'') {
+                return source.substring(start, pos++);
+            }
+            if (c == '\n') {
+                break;
+            }
+            pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private Object parseNumber() {
+        int start = pos;
+        boolean isFloat = false;
+        while (pos < length) {
+            char c = source.charAt(pos);
+            if (c == '.' || ((c == 'e' || c == 'E') && !source.startsWith("0x", start))) {
+                isFloat = true;
+            } else if (!(Character.isLetterOrDigit(c) || c == '_' || c == '+' || c == '-')) {
+                break;
+            }
+            pos++;
+        }
+
+        String number = source.substring(start, pos).replace("_", "");
+        try {
+            if (isFloat) {
+                return Double.parseDouble(number);
+            }
+            if (number.startsWith("0x")) {
+                return Long.parseLong(number.substring(2), 16);
+            }
+            if (number.startsWith("0o")) {
+                return Long.parseLong(number.substring(2), 8);
+            }
+            if (number.startsWith("0b")) {
+                return Long.parseLong(number.substring(2), 2);
+            }
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number: " + number);
+        }
+    }
+
+    /**
+     * Skips spaces and tabs, plus comments and line breaks if requested
+     */
+    private void skipBlank(boolean acrossLines) {
+        while (pos < length) {
+            char c = source.charAt(pos);
+            if (c == ' ' || c == '\t') {
+                pos++;
+            } else if (acrossLines && (c == '\n' || c == '\r')) {
+                if (c == '\n') {
+                    line++;
+                }
+                pos++;
+            } else if (acrossLines && c == '#') {
+                skipComment();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void skipComment() {
+        while (pos < length && source.charAt(pos) != '\n') {
+            pos++;
+        }
+    }
+
+    /**
+     * After a key/value pair or table header only a comment may follow on the same line
+     */
+    private void expectLineEnd() {
+        skipBlank(false);
+        if (pos < length && source.charAt(pos) == '#') {
+            skipComment();
+        }
+        if (pos < length && source.charAt(pos) == '\r') {
+            pos++;
+        }
+        if (pos < length) {
+            if (source.charAt(pos) != '\n') {
+                throw error("Expected a line break");
+            }
+            pos++;
+            line++;
+        }
+    }
+
+    private void expect(char expected) {
+        if (pos >= length || source.charAt(pos) != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        pos++;
+    }
+
+    private static boolean isBareKeyChar(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("TOML line " + line + ": " + message);
+    }
+}
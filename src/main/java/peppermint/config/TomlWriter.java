@@ -0,0 +1,139 @@
+package peppermint.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a TomlDocument back to TOML that TomlParser reads into an equal document.
+ * Keys without a dot are written first; the others are grouped into one [table]
+ * per prefix, in the order the tables first appear in the document.
+ */
+public final class TomlWriter {
+    private final StringBuilder out = new StringBuilder();
+
+    private TomlWriter() {
+    }
+
+    /**
+     * Writes a document as TOML
+     * @param document Document to write
+     * @param header Comment written at the top of the file, or null
+     * @return TOML source
+     */
+    public static String write(TomlDocument document, String header) {
+        TomlWriter writer = new TomlWriter();
+        writer.writeDocument(document, header);
+        return writer.out.toString();
+    }
+
+    private void writeDocument(TomlDocument document, String header) {
+        if (header != null) {
+            out.append("# ").append(header).append('\n');
+        }
+
+        Map<String, List<Map.Entry<String, Object>>> tables = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : document.asMap().entrySet()) {
+            int dot = entry.getKey().lastIndexOf('.');
+            String table = dot < 0 ? "" : entry.getKey().substring(0, dot);
+            tables.computeIfAbsent(table, t -> new ArrayList<>()).add(entry);
+        }
+
+        List<Map.Entry<String, Object>> topLevel = tables.remove("");
+        if (topLevel != null) {
+            writeEntries(topLevel, 0);
+        }
+        for (Map.Entry<String, List<Map.Entry<String, Object>>> table : tables.entrySet()) {
+            if (out.length() > 0) {
+                out.append('\n');
+            }
+            out.append('[');
+            writeDottedKey(table.getKey());
+            out.append("]\n");
+            writeEntries(table.getValue(), table.getKey().length() + 1);
+        }
+    }
+
+    private void writeEntries(List<Map.Entry<String, Object>> entries, int prefixLength) {
+        for (Map.Entry<String, Object> entry : entries) {
+            writeKey(entry.getKey().substring(prefixLength));
+            out.append(" = ");
+            writeValue(entry.getValue());
+            out.append('\n');
+        }
+    }
+
+    private void writeDottedKey(String key) {
+        String[] parts = key.split("\\.", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                out.append('.');
+            }
+            writeKey(parts[i]);
+        }
+    }
+
+    private void writeKey(String key) {
+        boolean bare = !key.isEmpty();
+        for (int i = 0; i < key.length() && bare; i++) {
+            char c = key.charAt(i);
+            bare = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+        }
+        if (bare) {
+            out.append(key);
+        } else {
+            writeString(key);
+        }
+    }
+
+    private void writeValue(Object value) {
+        if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (!Double.isFinite(number)) {
+                // TomlParser doesn't read nan and inf
+                throw new IllegalArgumentException("Unsupported TOML value: " + value);
+            }
+            out.append(number);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof List) {
+            out.append('[');
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                writeValue(list.get(i));
+            }
+            out.append(']');
+        } else {
+            throw new IllegalArgumentException("Unsupported TOML value: " + value);
+        }
+    }
+
+    private void writeString(String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\b': out.append("\\b"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\f': out.append("\\f"); break;
+                case '\r': out.append("\\r"); break;
+                default:
+                    if (c < 0x20 || c == 0x7F) {
+                        out.append(String.format("\\u%04X", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
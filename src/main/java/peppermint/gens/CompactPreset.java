@@ -0,0 +1,236 @@
+package peppermint.gens;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Compact, immutable form of a preset. Levels are stored as one byte per level
+ * (world * 10 + level), patterns as one byte per pattern ordinal, and seed slots
+ * as a 64-bit mask over the plant list. Display strings are produced lazily from
+ * the generators' static tables, so holding millions of these stays cheap.
+ *
+ * Seed slots keep the order they were drawn in, next to the mask: 4 bits per
+ * slot, slot 0 in the lowest bits, each holding the rank within the mask of the
+ * plant in that slot. An order of 0 lists the slots in plant list order, as
+ * presets stored before the order was recorded have it.
+ */
+public final class CompactPreset {
+    // Level codes in [0, levelCount), pattern ordinals in [levelCount, 2 * levelCount)
+    private final byte[] levelsAndPatterns;
+    private final long seedSlotMask;
+    private final long seedSlotOrder;
+    private final long runSeed;
+    private final boolean seeded;
+
+    CompactPreset(byte[] levelsAndPatterns, long seedSlotMask, long seedSlotOrder, long runSeed, boolean seeded) {
+        this.levelsAndPatterns = levelsAndPatterns;
+        this.seedSlotMask = seedSlotMask;
+        this.seedSlotOrder = seedSlotOrder;
+        this.runSeed = runSeed;
+        this.seeded = seeded;
+    }
+
+    /**
+     * Creates a compact preset from its raw parts
+     * @param levelCodes Level codes (world * 10 + level)
+     * @param patternOrdinals Pattern ordinals, one per level
+     * @param seedSlotMask Bitmask over the plant list; slots are listed in plant list order
+     * @return New compact preset without a run seed
+     */
+    public static CompactPreset of(int[] levelCodes, int[] patternOrdinals, long seedSlotMask) {
+        if (levelCodes.length != patternOrdinals.length) {
+            throw new IllegalArgumentException("Every level needs exactly one pattern");
+        }
+        byte[] data = new byte[levelCodes.length * 2];
+        for (int i = 0; i < levelCodes.length; i++) {
+            data[i] = (byte) levelCodes[i];
+            data[levelCodes.length + i] = (byte) patternOrdinals[i];
+        }
+        return new CompactPreset(data, seedSlotMask, 0L, 0L, false);
+    }
+
+    /**
+     * Converts a string-based preset into its compact form
+     * @param preset The preset to convert
+     * @return Compact form of the preset
+     */
+    public static CompactPreset of(PresetGenerator.Preset preset) {
+        List<String> levels = preset.getLevels();
+        List<String> patterns = preset.getPatterns();
+        int levelCount = levels.size();
+
+        byte[] data = new byte[levelCount * 2];
+        for (int i = 0; i < levelCount; i++) {
+            int levelCode = LevelGenerator.getLevelCode(levels.get(i));
+            int patternOrdinal = i < patterns.size() ? PatternGenerator.getPatternOrdinal(patterns.get(i)) : -1;
+            if (levelCode < 0 || patternOrdinal < 0) {
+                throw new IllegalArgumentException("Preset contains an unknown level or pattern at index " + i);
+            }
+            data[i] = (byte) levelCode;
+            data[levelCount + i] = (byte) patternOrdinal;
+        }
+
+        List<String> seedSlots = preset.getSeedSlots();
+        if (seedSlots.size() > 16) {
+            throw new IllegalArgumentException("Preset has more than 16 seed slots");
+        }
+        int[] plants = new int[seedSlots.size()];
+        long mask = 0L;
+        for (int i = 0; i < plants.length; i++) {
+            plants[i] = SeedSlotGenerator.getPlantIndex(seedSlots.get(i));
+            if (plants[i] < 0) {
+                throw new IllegalArgumentException("Preset contains an unknown plant: " + seedSlots.get(i));
+            }
+            mask |= 1L << plants[i];
+        }
+        long order = 0L;
+        for (int i = 0; i < plants.length; i++) {
+            order |= (long) Long.bitCount(mask & ((1L << plants[i]) - 1)) << (4 * i);
+        }
+
+        return new CompactPreset(data, mask, order, preset.hasRunSeed() ? preset.getRunSeed() : 0L, preset.hasRunSeed());
+    }
+
+    public int getLevelCount() {
+        return levelsAndPatterns.length / 2;
+    }
+
+    /**
+     * Gets the level code at the given position
+     * @param index Level position
+     * @return Level code (world * 10 + level)
+     */
+    public int getLevelCode(int index) {
+        return levelsAndPatterns[checkLevelIndex(index)];
+    }
+
+    /**
+     * Gets the pattern ordinal at the given position
+     * @param index Level position
+     * @return Pattern ordinal
+     */
+    public int getPatternOrdinal(int index) {
+        return levelsAndPatterns[getLevelCount() + checkLevelIndex(index)];
+    }
+
+    public long getSeedSlotMask() {
+        return seedSlotMask;
+    }
+
+    public int getSeedSlotCount() {
+        return Long.bitCount(seedSlotMask);
+    }
+
+    /**
+     * Gets the packed order of the seed slots, see the class description
+     * @return Draw order, or 0 for plant list order
+     */
+    public long getSeedSlotOrder() {
+        return seedSlotOrder;
+    }
+
+    /**
+     * Gets the plant in a seed slot
+     * @param slot Slot position, in the order the plants were drawn
+     * @return Plant index in the plant list
+     */
+    public int getSeedSlotPlant(int slot) {
+        if (slot < 0 || slot >= getSeedSlotCount()) {
+            throw new IndexOutOfBoundsException("Slot: " + slot + ", Size: " + getSeedSlotCount());
+        }
+        int rank = seedSlotOrder != 0 ? (int) (seedSlotOrder >>> (4 * slot)) & 0xF : slot;
+        long remaining = seedSlotMask;
+        for (int skip = 0; skip < rank; skip++) {
+            remaining &= remaining - 1;
+        }
+        return Long.numberOfTrailingZeros(remaining);
+    }
+
+    public boolean hasRunSeed() {
+        return seeded;
+    }
+
+    public long getRunSeed() {
+        if (!seeded) {
+            throw new IllegalStateException("Preset was not generated from a run seed");
+        }
+        return runSeed;
+    }
+
+    /**
+     * Gets the levels as display names. The list is a view and allocates no strings
+     * @return Read-only list of level names
+     */
+    public List<String> getLevels() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return LevelGenerator.getLevelName(getLevelCode(index));
+            }
+
+            @Override
+            public int size() {
+                return getLevelCount();
+            }
+        };
+    }
+
+    /**
+     * Gets the patterns as display names. The list is a view and allocates no strings
+     * @return Read-only list of pattern names
+     */
+    public List<String> getPatterns() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return PatternGenerator.getPatternName(getPatternOrdinal(index));
+            }
+
+            @Override
+            public int size() {
+                return getLevelCount();
+            }
+        };
+    }
+
+    /**
+     * Gets the seed slots as plant names, in the order they were drawn. The list is
+     * a view and allocates no strings
+     * @return Read-only list of plant names
+     */
+    public List<String> getSeedSlots() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return SeedSlotGenerator.getPlantName(getSeedSlotPlant(index));
+            }
+
+            @Override
+            public int size() {
+                return getSeedSlotCount();
+            }
+        };
+    }
+
+    /**
+     * Expands this compact preset into a string-based preset for display or editing
+     * @return New Preset with copies of the display strings
+     */
+    public PresetGenerator.Preset toPreset() {
+        PresetGenerator.Preset preset = new PresetGenerator.Preset();
+        preset.setLevels(new java.util.ArrayList<>(getLevels()));
+        preset.setPatterns(new java.util.ArrayList<>(getPatterns()));
+        preset.setSeedSlots(new java.util.ArrayList<>(getSeedSlots()));
+        if (seeded) {
+            preset.setRunSeed(runSeed);
+        }
+        return preset;
+    }
+
+    private int checkLevelIndex(int index) {
+        if (index < 0 || index >= getLevelCount()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getLevelCount());
+        }
+        return index;
+    }
+}
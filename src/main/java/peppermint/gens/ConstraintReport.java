@@ -0,0 +1,208 @@
+package peppermint.gens;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running statistics of how often each preset constraint pruned candidates during
+ * generation. Level constraints are charged for every level they rule out at a
+ * position; seed slot constraints for every plant they filter out or reject.
+ * Levels and plants are tallied apart, so each rate is taken against the pool
+ * the constraint actually pruned.
+ *
+ * Counters are safe to update from several bulk generation workers at once.
+ */
+public class ConstraintReport {
+    private final String[] descriptions;
+    private final LongAdder[] levelCandidates;
+    private final LongAdder[] levelsRejected;
+    private final LongAdder[] plantCandidates;
+    private final LongAdder[] plantsRejected;
+    private final LongAdder presets = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    ConstraintReport(PresetConstraint[] constraints) {
+        this.descriptions = new String[constraints.length];
+        this.levelCandidates = newAdders(constraints.length);
+        this.levelsRejected = newAdders(constraints.length);
+        this.plantCandidates = newAdders(constraints.length);
+        this.plantsRejected = newAdders(constraints.length);
+        for (int i = 0; i < constraints.length; i++) {
+            descriptions[i] = constraints[i].describe();
+        }
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    void recordLevels(int constraintIndex, long candidateCount, long rejectedCount) {
+        add(levelCandidates, levelsRejected, constraintIndex, candidateCount, rejectedCount);
+    }
+
+    void recordPlants(int constraintIndex, long candidateCount, long rejectedCount) {
+        add(plantCandidates, plantsRejected, constraintIndex, candidateCount, rejectedCount);
+    }
+
+    private static void add(LongAdder[] candidates, LongAdder[] rejected, int constraintIndex,
+                            long candidateCount, long rejectedCount) {
+        candidates[constraintIndex].add(candidateCount);
+        if (rejectedCount > 0) {
+            rejected[constraintIndex].add(rejectedCount);
+        }
+    }
+
+    void recordPreset() {
+        presets.increment();
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    public int getConstraintCount() {
+        return descriptions.length;
+    }
+
+    public String getDescription(int constraintIndex) {
+        return descriptions[constraintIndex];
+    }
+
+    /**
+     * Gets the number of candidates a constraint was checked against
+     * @param constraintIndex Index of the constraint
+     * @return Number of candidate levels and plants
+     */
+    public long getCandidates(int constraintIndex) {
+        return getLevelCandidates(constraintIndex) + getPlantCandidates(constraintIndex);
+    }
+
+    /**
+     * Gets the number of candidates a constraint pruned
+     * @param constraintIndex Index of the constraint
+     * @return Number of rejected candidate levels and plants
+     */
+    public long getRejected(int constraintIndex) {
+        return getLevelsRejected(constraintIndex) + getPlantsRejected(constraintIndex);
+    }
+
+    /**
+     * Gets the share of candidates a constraint pruned, over both levels and plants
+     * @param constraintIndex Index of the constraint
+     * @return Rejection rate between 0 and 1
+     */
+    public double getRejectionRate(int constraintIndex) {
+        return rate(getRejected(constraintIndex), getCandidates(constraintIndex));
+    }
+
+    /**
+     * Gets the number of level candidates a constraint was checked against
+     * @param constraintIndex Index of the constraint
+     * @return Number of candidates
+     */
+    public long getLevelCandidates(int constraintIndex) {
+        return levelCandidates[constraintIndex].sum();
+    }
+
+    /**
+     * Gets the number of level candidates a constraint ruled out
+     * @param constraintIndex Index of the constraint
+     * @return Number of rejected candidates
+     */
+    public long getLevelsRejected(int constraintIndex) {
+        return levelsRejected[constraintIndex].sum();
+    }
+
+    /**
+     * Gets the share of level candidates a constraint ruled out
+     * @param constraintIndex Index of the constraint
+     * @return Rejection rate between 0 and 1, or 0 for constraints that don't pick levels
+     */
+    public double getLevelRejectionRate(int constraintIndex) {
+        return rate(getLevelsRejected(constraintIndex), getLevelCandidates(constraintIndex));
+    }
+
+    /**
+     * Gets the number of plants a constraint's seed slot rule was checked against
+     * @param constraintIndex Index of the constraint
+     * @return Number of candidates
+     */
+    public long getPlantCandidates(int constraintIndex) {
+        return plantCandidates[constraintIndex].sum();
+    }
+
+    /**
+     * Gets the number of plants a constraint's seed slot rule filtered out or rejected
+     * @param constraintIndex Index of the constraint
+     * @return Number of rejected candidates
+     */
+    public long getPlantsRejected(int constraintIndex) {
+        return plantsRejected[constraintIndex].sum();
+    }
+
+    /**
+     * Gets the share of plant candidates a constraint filtered out or rejected
+     * @param constraintIndex Index of the constraint
+     * @return Rejection rate between 0 and 1, or 0 for constraints without a seed slot rule
+     */
+    public double getPlantRejectionRate(int constraintIndex) {
+        return rate(getPlantsRejected(constraintIndex), getPlantCandidates(constraintIndex));
+    }
+
+    private static double rate(long rejectedCount, long candidateCount) {
+        return candidateCount == 0 ? 0.0 : (double) rejectedCount / candidateCount;
+    }
+
+    /**
+     * Gets the number of presets generated under the constraints
+     * @return Number of presets
+     */
+    public long getPresetsGenerated() {
+        return presets.sum();
+    }
+
+    /**
+     * Gets the number of generation attempts that ran out of candidates
+     * @return Number of failed attempts
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Clears all counters
+     */
+    public void reset() {
+        for (int i = 0; i < descriptions.length; i++) {
+            levelCandidates[i].reset();
+            levelsRejected[i].reset();
+            plantCandidates[i].reset();
+            plantsRejected[i].reset();
+        }
+        presets.reset();
+        failures.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("Presets generated: ").append(getPresetsGenerated())
+              .append(", failed: ").append(getFailures()).append('\n');
+        for (int i = 0; i < descriptions.length; i++) {
+            if (getLevelCandidates(i) > 0) {
+                report.append(String.format("  %-55s %6.2f%% rejected (%d of %d level candidates)%n",
+                                            descriptions[i], getLevelRejectionRate(i) * 100.0,
+                                            getLevelsRejected(i), getLevelCandidates(i)));
+            }
+            if (getPlantCandidates(i) > 0 || getLevelCandidates(i) == 0) {
+                report.append(String.format("  %-55s %6.2f%% rejected (%d of %d plant candidates)%n",
+                                            descriptions[i], getPlantRejectionRate(i) * 100.0,
+                                            getPlantsRejected(i), getPlantCandidates(i)));
+            }
+        }
+        return report.toString();
+    }
+}
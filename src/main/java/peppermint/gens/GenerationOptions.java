@@ -0,0 +1,44 @@
+package peppermint.gens;
+
+/**
+ * Immutable set of parameters describing how a preset should be generated.
+ */
+public class GenerationOptions {
+    private final int numLevels;
+    private final boolean generateLevels;
+    private final int numSeedSlots;
+    private final boolean generatePatternForEveryLevel;
+
+    /**
+     * Creates a new set of generation options
+     * @param numLevels Number of levels to generate (up to 12)
+     * @param generateLevels Whether to generate levels (false for endless modes)
+     * @param numSeedSlots Number of seed slots (6-10)
+     * @param generatePatternForEveryLevel Whether to generate a pattern for each level or just once
+     */
+    public GenerationOptions(int numLevels, boolean generateLevels, int numSeedSlots, boolean generatePatternForEveryLevel) {
+        if (numSeedSlots < 6 || numSeedSlots > 10) {
+            throw new IllegalArgumentException("Number of seed slots must be between 6 and 10");
+        }
+        this.numLevels = numLevels;
+        this.generateLevels = generateLevels;
+        this.numSeedSlots = numSeedSlots;
+        this.generatePatternForEveryLevel = generatePatternForEveryLevel;
+    }
+
+    public int getNumLevels() {
+        return numLevels;
+    }
+
+    public boolean isGenerateLevels() {
+        return generateLevels;
+    }
+
+    public int getNumSeedSlots() {
+        return numSeedSlots;
+    }
+
+    public boolean isGeneratePatternForEveryLevel() {
+        return generatePatternForEveryLevel;
+    }
+}
@@ -4,14 +4,45 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class LevelGenerator {
-    private Random random;
+    // Display names indexed by level code (world * 10 + level), built once so display never allocates
+    private static final String[] LEVEL_NAMES = new String[61];
+
+    /** Bitmask over level codes with every level (11-60) set */
+    public static final long ALL_LEVELS_MASK = ((1L << 50) - 1) << 11;
+
+    static {
+        for (int world = 1; world <= 5; world++) {
+            for (int level = 1; level <= 10; level++) {
+                LEVEL_NAMES[world * 10 + level] = formatLevel(level, world, getWorldName(world));
+            }
+        }
+    }
+
+    private RandomGenerator random;
     
     public LevelGenerator() {
         this.random = new Random();
     }
+
+    /**
+     * Creates a generator that draws from the given random source
+     * @param random Random source to use, e.g. a per-worker SplittableRandom
+     */
+    public LevelGenerator(RandomGenerator random) {
+        this.random = random;
+    }
     
+    RandomGenerator getRandom() {
+        return random;
+    }
+
+    void setRandom(RandomGenerator random) {
+        this.random = random;
+    }
+
     public List<String> generateLevels(int numLevels, boolean canBeEndless) {
         List<String> levels = new ArrayList<>();
         
@@ -31,27 +62,86 @@ public class LevelGenerator {
     }
     
     private String generateRandomLevel() {
+        return getLevelName(nextLevelCode());
+    }
+
+    /**
+     * Picks a random level and returns it as a compact level code
+     * @return Level code (world * 10 + level, e.g. 34 for 3-4)
+     */
+    public int nextLevelCode() {
         // Select a world randomly
         int world = random.nextInt(5) + 1; // 1-5 for Day, Night, Pool, Fog, Roof
         int levelNum = random.nextInt(10) + 1; // 1-10 for each world
-        
-        switch (world) {
-            case 1: // Day
-                return formatLevel(levelNum, 1, "Day");
-            case 2: // Night
-                return formatLevel(levelNum, 2, "Night");
-            case 3: // Pool
-                return formatLevel(levelNum, 3, "Pool");
-            case 4: // Fog
-                return formatLevel(levelNum, 4, "Fog");
-            case 5: // Roof
-                return formatLevel(levelNum, 5, "Roof");
-            default:
-                return formatLevel(1, 1, "Day"); // Default case
+
+        return world * 10 + levelNum;
+    }
+
+    /**
+     * Picks a random level out of a set of allowed levels, each with equal probability
+     * @param allowedLevels Bitmask over level codes, see World.getLevelMask()
+     * @return Level code of the picked level
+     * @throws IllegalStateException if no level is allowed
+     */
+    public int nextLevelCode(long allowedLevels) {
+        allowedLevels &= ALL_LEVELS_MASK;
+        int candidates = Long.bitCount(allowedLevels);
+        if (candidates == 0) {
+            throw new IllegalStateException("No level is allowed");
         }
+
+        // Clear the lowest set bits until the picked one is the lowest
+        for (int skip = random.nextInt(candidates); skip > 0; skip--) {
+            allowedLevels &= allowedLevels - 1;
+        }
+        return Long.numberOfTrailingZeros(allowedLevels);
     }
-    
-    private String formatLevel(int levelNum, int worldNum, String worldName) {
+
+    /**
+     * Gets the display name of a level code, e.g. "3-4 (Pool)"
+     * @param levelCode Level code (world * 10 + level)
+     * @return Display name of the level
+     */
+    public static String getLevelName(int levelCode) {
+        if (levelCode < 11 || levelCode > 60) {
+            throw new IllegalArgumentException("Invalid level code: " + levelCode);
+        }
+        return LEVEL_NAMES[levelCode];
+    }
+
+    /**
+     * Gets the world number (1-5) of a level code
+     * @param levelCode Level code (world * 10 + level)
+     * @return World number
+     */
+    public static int getWorldOf(int levelCode) {
+        return (levelCode - 1) / 10;
+    }
+
+    /**
+     * Gets the level number (1-10) of a level code
+     * @param levelCode Level code (world * 10 + level)
+     * @return Level number within its world
+     */
+    public static int getLevelOf(int levelCode) {
+        return (levelCode - 1) % 10 + 1;
+    }
+
+    /**
+     * Converts a level display name back to its level code
+     * @param levelName Display name such as "3-4 (Pool)"
+     * @return Level code, or -1 if the name is not a known level
+     */
+    public static int getLevelCode(String levelName) {
+        for (int code = 11; code <= 60; code++) {
+            if (LEVEL_NAMES[code].equals(levelName)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    private static String formatLevel(int levelNum, int worldNum, String worldName) {
         return worldNum + "-" + levelNum + " (" + worldName + ")";
     }
     
@@ -69,15 +159,8 @@ public class LevelGenerator {
         return allLevels;
     }
     
-    private String getWorldName(int worldNum) {
-        switch (worldNum) {
-            case 1: return "Day";
-            case 2: return "Night";
-            case 3: return "Pool";
-            case 4: return "Fog";
-            case 5: return "Roof";
-            default: return "Day";
-        }
+    private static String getWorldName(int worldNum) {
+        return World.fromNumber(worldNum).getDisplayName();
     }
     
     public static void main(String[] args) {
@@ -1,11 +1,13 @@
 package peppermint.gens;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class PatternGenerator {
-    private Random random;
+    private RandomGenerator random;
     
     // Regular patterns (higher chance to generate)
     private static final String[] REGULAR_PATTERNS = {
@@ -39,60 +41,181 @@ public class PatternGenerator {
         "Zombie Chewer", "Zombie Chewer Xtreme"
     };
     
+    // Every pattern indexed by its ordinal, in the same order as getAllPatterns()
+    private static final String[] ALL_PATTERNS = concat(
+        REGULAR_PATTERNS, INVERTED_PATTERNS, WATER_SKI_PATTERNS,
+        INVERTED_WATER_SKI_PATTERNS, CORNER_SUNS_PATTERNS, ZOMBIE_CHEWER_PATTERNS
+    );
+
+    private static final int INVERTED_OFFSET = REGULAR_PATTERNS.length;
+    private static final int WATER_SKI_OFFSET = INVERTED_OFFSET + INVERTED_PATTERNS.length;
+    private static final int INVERTED_WATER_SKI_OFFSET = WATER_SKI_OFFSET + WATER_SKI_PATTERNS.length;
+    private static final int CORNER_SUNS_OFFSET = INVERTED_WATER_SKI_OFFSET + INVERTED_WATER_SKI_PATTERNS.length;
+    private static final int ZOMBIE_CHEWER_OFFSET = CORNER_SUNS_OFFSET + CORNER_SUNS_PATTERNS.length;
+
+    // Flags selecting which optional pattern groups are candidates
+    private static final int POOL = 1;
+    private static final int INVERTED = 2;
+    private static final int INVERTED_WATER_SKI = 4;
+    private static final int ZOMBIE_CHEWER = 8;
+
+    // Immutable candidate ordinals for every pool/inverted/inverted-water-ski/zombie-chewer combination
+    private static final byte[][] CANDIDATE_TABLES = new byte[16][];
+
+    static {
+        for (int candidates = 0; candidates < CANDIDATE_TABLES.length; candidates++) {
+            CANDIDATE_TABLES[candidates] = buildCandidateTable(candidates);
+        }
+    }
+
     public PatternGenerator() {
         this.random = new Random();
     }
+
+    /**
+     * Creates a generator that draws from the given random source
+     * @param random Random source to use, e.g. a per-worker SplittableRandom
+     */
+    public PatternGenerator(RandomGenerator random) {
+        this.random = random;
+    }
     
+    RandomGenerator getRandom() {
+        return random;
+    }
+
+    void setRandom(RandomGenerator random) {
+        this.random = random;
+    }
+
+    /**
+     * Picks a random pattern for a level given by its display name. Any name is
+     * accepted; levels not marked "(Pool)" get the non-pool patterns
+     * @param level Level display name, e.g. "3-4 (Pool)"
+     * @param forAllLevels Whether the pattern is shared by every level of the preset
+     * @return Pattern name
+     */
     public String generatePattern(String level, boolean forAllLevels) {
-        // Check if level is a pool level
-        boolean isPoolLevel = level.contains("(Pool)");
-        
-        List<String> availablePatterns = new ArrayList<>();
-        
-        // Add regular patterns (these are always available)
-        for (String pattern : REGULAR_PATTERNS) {
-            availablePatterns.add(pattern);
-        }
-        
-        // Add inverted patterns (lower chance)
+        return ALL_PATTERNS[nextPatternOrdinal(level.contains("(Pool)"))];
+    }
+
+    /**
+     * Picks a random pattern for a level in the given world
+     * @param world World of the level
+     * @param forAllLevels Whether the pattern is shared by every level of the preset
+     * @return Pattern name
+     */
+    public String generatePattern(World world, boolean forAllLevels) {
+        return ALL_PATTERNS[nextPatternOrdinal(world)];
+    }
+
+    /**
+     * Picks a random pattern and returns its ordinal. Selection is a single lookup
+     * into a precomputed candidate table and allocates nothing
+     * @param world World of the level
+     * @return Pattern ordinal (index into getAllPatterns())
+     */
+    public int nextPatternOrdinal(World world) {
+        return nextPatternOrdinal(world.hasWaterSkiPatterns());
+    }
+
+    private int nextPatternOrdinal(boolean isPoolLevel) {
+        int candidates = isPoolLevel ? POOL : 0;
+
+        // Roll for the optional groups in the same order the candidate list used to be built
         if (random.nextInt(100) < 20) { // 20% chance to include inverted patterns
-            for (String pattern : INVERTED_PATTERNS) {
-                availablePatterns.add(pattern);
-            }
+            candidates |= INVERTED;
+        }
+        if (isPoolLevel && random.nextInt(100) < 20) { // 20% chance to include inverted water ski patterns
+            candidates |= INVERTED_WATER_SKI;
+        }
+        if (random.nextInt(100) < 10) { // 10% chance for special patterns
+            candidates |= ZOMBIE_CHEWER;
+        }
+
+        byte[] table = CANDIDATE_TABLES[candidates];
+        return table[random.nextInt(table.length)];
+    }
+
+    /**
+     * Builds the candidate ordinals for one combination of optional pattern groups,
+     * in the order regular, inverted, water ski, inverted water ski, corner suns, zombie chewer
+     */
+    private static byte[] buildCandidateTable(int candidates) {
+        boolean isPoolLevel = (candidates & POOL) != 0;
+        byte[] table = new byte[ALL_PATTERNS.length];
+        int size = 0;
+
+        size = appendOrdinals(table, size, 0, REGULAR_PATTERNS.length);
+        if ((candidates & INVERTED) != 0) {
+            size = appendOrdinals(table, size, INVERTED_OFFSET, INVERTED_PATTERNS.length);
         }
-        
-        // Add water ski patterns if it's a pool level
         if (isPoolLevel) {
-            for (String pattern : WATER_SKI_PATTERNS) {
-                availablePatterns.add(pattern);
-            }
-            
-            // Add inverted water ski patterns (lower chance)
-            if (random.nextInt(100) < 20) { // 20% chance to include inverted water ski patterns
-                for (String pattern : INVERTED_WATER_SKI_PATTERNS) {
-                    availablePatterns.add(pattern);
-                }
+            size = appendOrdinals(table, size, WATER_SKI_OFFSET, WATER_SKI_PATTERNS.length);
+            if ((candidates & INVERTED_WATER_SKI) != 0) {
+                size = appendOrdinals(table, size, INVERTED_WATER_SKI_OFFSET, INVERTED_WATER_SKI_PATTERNS.length);
             }
         }
-        
-        // Add corner suns patterns
-        for (String pattern : CORNER_SUNS_PATTERNS) {
-            availablePatterns.add(pattern);
+        size = appendOrdinals(table, size, CORNER_SUNS_OFFSET, CORNER_SUNS_PATTERNS.length);
+        if ((candidates & ZOMBIE_CHEWER) != 0) {
+            size = appendOrdinals(table, size, ZOMBIE_CHEWER_OFFSET, ZOMBIE_CHEWER_PATTERNS.length);
         }
-        
-        // Special conditions for zombie chewer patterns
-        // These would be added based on specific conditions in a real implementation
-        if (random.nextInt(100) < 10) { // 10% chance for special patterns
-            for (String pattern : ZOMBIE_CHEWER_PATTERNS) {
-                availablePatterns.add(pattern);
+
+        return Arrays.copyOf(table, size);
+    }
+
+    private static int appendOrdinals(byte[] table, int size, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            table[size++] = (byte) (offset + i);
+        }
+        return size;
+    }
+
+    /**
+     * Gets the name of a pattern ordinal
+     * @param ordinal Pattern ordinal (index into getAllPatterns())
+     * @return Pattern name
+     */
+    public static String getPatternName(int ordinal) {
+        return ALL_PATTERNS[ordinal];
+    }
+
+    /**
+     * Converts a pattern name back to its ordinal
+     * @param patternName Pattern name
+     * @return Pattern ordinal, or -1 if the name is not a known pattern
+     */
+    public static int getPatternOrdinal(String patternName) {
+        for (int i = 0; i < ALL_PATTERNS.length; i++) {
+            if (ALL_PATTERNS[i].equals(patternName)) {
+                return i;
             }
         }
-        
-        // Select a random pattern from available patterns
-        int index = random.nextInt(availablePatterns.size());
-        return availablePatterns.get(index);
+        return -1;
     }
-    
+
+    /**
+     * Gets the total number of known patterns
+     * @return Number of patterns
+     */
+    public static int getPatternCount() {
+        return ALL_PATTERNS.length;
+    }
+
+    private static String[] concat(String[]... groups) {
+        int length = 0;
+        for (String[] group : groups) {
+            length += group.length;
+        }
+        String[] all = new String[length];
+        int offset = 0;
+        for (String[] group : groups) {
+            System.arraycopy(group, 0, all, offset, group.length);
+            offset += group.length;
+        }
+        return all;
+    }
+
     public List<String> getAllPatterns() {
         List<String> allPatterns = new ArrayList<>();
         
@@ -186,5 +309,10 @@ public class PatternGenerator {
             String pattern = generator.generatePattern(level, true);
             System.out.println(level + " -> " + pattern);
         }
+
+        System.out.println("\nGenerated Patterns per World:");
+        for (World world : World.values()) {
+            System.out.println(world.getDisplayName() + " -> " + generator.generatePattern(world, true));
+        }
     }
 }
\ No newline at end of file
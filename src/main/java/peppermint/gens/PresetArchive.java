@@ -0,0 +1,361 @@
+package peppermint.gens;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Fixed-record preset archive for keeping historical runs. Records are read
+ * straight out of memory-mapped segments, so get(i) is O(1) and does not copy
+ * the file into the heap regardless of archive size.
+ *
+ * <pre>
+ * offset  size  field
+ *      0     4  magic "PMPA"
+ *      4     2  schema version
+ *      6     2  record size (PresetRecord.SIZE)
+ *      8     8  committed record count
+ *     16    16  reserved, zero
+ *     32     -  records, PresetRecord.SIZE bytes each
+ * </pre>
+ *
+ * Appends write the record first and only then publish the new count in the
+ * header, so readers that have the file mapped, in this process or another,
+ * never see a partially written record. The file grows ahead of the count in
+ * chunks; the header count alone says how many records there are, and the
+ * zeroed space after them is reused by the next append. The file is never
+ * shrunk, since it may be mapped (shrinking a mapped file fails on Windows).
+ *
+ * Reads are thread-safe. Appends are serialized on the archive. Only one
+ * writable archive can be open per file; it holds a lock until it is closed.
+ */
+public class PresetArchive implements Closeable {
+    /** Magic number at the start of a preset archive ("PMPA") */
+    public static final int MAGIC = 0x504D5041;
+    /** Current schema version */
+    public static final short SCHEMA_VERSION = 1;
+    /** Size of the header in bytes */
+    public static final int HEADER_SIZE = 32;
+
+    private static final int COUNT_OFFSET = 8;
+
+    // Records per mapped segment; keeps every mapping under the 2 GiB buffer limit
+    private static final long SEGMENT_RECORDS = (1L << 30) / PresetRecord.SIZE;
+    private static final long SEGMENT_BYTES = SEGMENT_RECORDS * PresetRecord.SIZE;
+
+    // File growth bounds when appending, in bytes
+    private static final long MIN_GROWTH = 1024L * PresetRecord.SIZE;
+    private static final long MAX_GROWTH = 64L << 20;
+
+    // Records written per channel call when appending in bulk
+    private static final int APPEND_BATCH = 1024;
+
+    // Writers lock one byte far past any record, so the lock never covers data
+    // that readers in other processes map (Windows locks are mandatory)
+    private static final long LOCK_POSITION = Long.MAX_VALUE - 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean writable;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile long committedCount;
+    private volatile boolean closed;
+    private ByteBuffer appendBuffer;
+
+    private PresetArchive(Path path, FileChannel channel, boolean writable) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.writable = writable;
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException("Not a preset archive: " + path);
+        }
+        this.header = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                                  0, HEADER_SIZE);
+        validateHeader();
+        this.committedCount = header.getLong(COUNT_OFFSET);
+    }
+
+    /**
+     * Opens an archive for reading and appending, creating it if it does not exist
+     * @param path Archive file
+     * @return The archive
+     * @throws IOException if the file cannot be opened, is not a preset archive, or
+     *         is already open for appending, in this process or another
+     */
+    public static PresetArchive open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock(LOCK_POSITION, 1, false);
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("Preset archive is already open for writing: " + path);
+            }
+            // Released when the channel is closed
+
+            if (channel.size() == 0) {
+                writeEmptyHeader(channel);
+            }
+            return new PresetArchive(path, channel, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing archive for reading only. Records appended by another
+     * writer become visible as soon as the writer publishes them
+     * @param path Archive file
+     * @return The archive
+     * @throws IOException if the file cannot be opened or is not a preset archive
+     */
+    public static PresetArchive openReadOnly(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new PresetArchive(path, channel, false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of committed records
+     * @return Record count
+     */
+    public long size() {
+        return writable ? committedCount : header.getLong(COUNT_OFFSET);
+    }
+
+    /**
+     * Reads a record directly from the mapped file
+     * @param index Record index
+     * @return The preset stored at the index
+     */
+    public CompactPreset get(long index) {
+        return PresetRecord.read(segmentFor(index), recordOffset(index));
+    }
+
+    /**
+     * Reads a record as a string-based preset
+     * @param index Record index
+     * @return The preset stored at the index
+     */
+    public PresetGenerator.Preset getPreset(long index) {
+        return get(index).toPreset();
+    }
+
+    /**
+     * Appends a preset and publishes it to readers
+     * @param preset The preset to append
+     * @return Index of the new record
+     * @throws IOException if writing to the file fails
+     */
+    public synchronized long append(CompactPreset preset) throws IOException {
+        ensureWritable();
+        ByteBuffer buffer = appendBuffer(1);
+        PresetRecord.write(preset, buffer);
+        long index = committedCount;
+        writeRecords(buffer, index, 1);
+        return index;
+    }
+
+    /**
+     * Appends a string-based preset
+     * @param preset The preset to append
+     * @return Index of the new record
+     * @throws IOException if writing to the file fails
+     */
+    public long append(PresetGenerator.Preset preset) throws IOException {
+        return append(CompactPreset.of(preset));
+    }
+
+    /**
+     * Appends every preset of a bulk result, publishing them in batches
+     * @param result The bulk result to append
+     * @return Index of the first new record
+     * @throws IOException if writing to the file fails
+     */
+    public synchronized long appendAll(PresetGenerator.BulkResult result) throws IOException {
+        ensureWritable();
+        long first = committedCount;
+        ByteBuffer buffer = appendBuffer(APPEND_BATCH);
+        int pending = 0;
+        for (CompactPreset preset : result.getCompactPresets()) {
+            PresetRecord.write(preset, buffer);
+            if (++pending == APPEND_BATCH) {
+                writeRecords(buffer, committedCount, pending);
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            writeRecords(buffer, committedCount, pending);
+        }
+        return first;
+    }
+
+    /**
+     * Forces committed records and the header to storage
+     * @throws IOException if the file cannot be synced
+     */
+    public void force() throws IOException {
+        ensureWritable();
+        channel.force(false);
+        header.force();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Closes the archive and, if it is writable, releases its lock
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        channel.close();
+    }
+
+    private void validateHeader() throws IOException {
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a preset archive: " + path);
+        }
+        short version = header.getShort(4);
+        if (version != SCHEMA_VERSION) {
+            throw new IOException("Unsupported preset archive version " + version + ": " + path);
+        }
+        short recordSize = header.getShort(6);
+        if (recordSize != PresetRecord.SIZE) {
+            throw new IOException("Unexpected record size " + recordSize + ": " + path);
+        }
+        long count = header.getLong(COUNT_OFFSET);
+        if (count < 0 || HEADER_SIZE + count * PresetRecord.SIZE > channel.size()) {
+            throw new IOException("Preset archive is truncated: " + path);
+        }
+    }
+
+    private static void writeEmptyHeader(FileChannel channel) throws IOException {
+        ByteBuffer empty = ByteBuffer.allocate(HEADER_SIZE);
+        empty.putInt(MAGIC);
+        empty.putShort(SCHEMA_VERSION);
+        empty.putShort((short) PresetRecord.SIZE);
+        empty.putLong(0L);
+        empty.clear();
+        while (empty.hasRemaining()) {
+            channel.write(empty, empty.position());
+        }
+    }
+
+    /**
+     * Writes pending records at the given index, then publishes the new count
+     */
+    private void writeRecords(ByteBuffer buffer, long index, int records) throws IOException {
+        long position = HEADER_SIZE + index * PresetRecord.SIZE;
+        ensureCapacity(position + (long) records * PresetRecord.SIZE);
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+
+        long newCount = index + records;
+        header.putLong(COUNT_OFFSET, newCount);
+        committedCount = newCount;
+    }
+
+    /**
+     * Grows the file ahead of the records so readers do not have to remap on every append
+     */
+    private void ensureCapacity(long requiredSize) throws IOException {
+        long size = channel.size();
+        if (requiredSize <= size) {
+            return;
+        }
+        long growth = Math.max(MIN_GROWTH, Math.min(MAX_GROWTH, size / 2));
+        long newSize = Math.max(requiredSize, size + growth);
+        channel.write(ByteBuffer.allocate(1), newSize - 1);
+    }
+
+    private ByteBuffer appendBuffer(int records) {
+        if (appendBuffer == null || appendBuffer.capacity() < records * PresetRecord.SIZE) {
+            appendBuffer = ByteBuffer.allocateDirect(records * PresetRecord.SIZE);
+        }
+        appendBuffer.clear();
+        return appendBuffer;
+    }
+
+    private static int recordOffset(long index) {
+        return (int) (index % SEGMENT_RECORDS) * PresetRecord.SIZE;
+    }
+
+    /**
+     * Gets the mapped segment holding a record, remapping it if the file has grown
+     */
+    private MappedByteBuffer segmentFor(long index) {
+        if (closed) {
+            throw new IllegalStateException("Preset archive is closed: " + path);
+        }
+        long count = size();
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+
+        int segment = (int) (index / SEGMENT_RECORDS);
+        int end = recordOffset(index) + PresetRecord.SIZE;
+        MappedByteBuffer[] mapped = segments;
+        if (segment < mapped.length && mapped[segment] != null && mapped[segment].capacity() >= end) {
+            return mapped[segment];
+        }
+        return remap(segment, end);
+    }
+
+    private synchronized MappedByteBuffer remap(int segment, int end) {
+        MappedByteBuffer[] mapped = segments;
+        if (segment < mapped.length && mapped[segment] != null && mapped[segment].capacity() >= end) {
+            return mapped[segment];
+        }
+        try {
+            long start = HEADER_SIZE + segment * SEGMENT_BYTES;
+            long length = Math.min(SEGMENT_BYTES, channel.size() - start);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+
+            MappedByteBuffer[] grown = Arrays.copyOf(mapped, Math.max(mapped.length, segment + 1));
+            grown[segment] = buffer;
+            segments = grown;
+            return buffer;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map preset archive " + path, e);
+        }
+    }
+
+    private void ensureWritable() throws IOException {
+        if (closed) {
+            throw new IOException("Preset archive is closed: " + path);
+        }
+        if (!writable) {
+            throw new IOException("Preset archive is read-only: " + path);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package peppermint.gens;
+
+/**
+ * A rule a preset has to satisfy, applied while the preset is generated instead
+ * of by filtering finished presets. Level rules prune the levels that may fill
+ * the next position; seed slot rules are handed to the seed slot sampler once the
+ * levels are known.
+ *
+ * Levels are identified by their level code (world * 10 + level) and sets of
+ * levels are bitmasks over level codes, see World.getLevelMask(). Per-world level
+ * counts are indexed by world number (1-5).
+ */
+public interface PresetConstraint {
+
+    /**
+     * Levels that may fill the next level position
+     * @param usedLevels Bitmask of the levels already picked
+     * @param worldCounts Number of levels picked so far per world number
+     * @return Bitmask over level codes of the allowed levels
+     */
+    default long allowedLevels(long usedLevels, int[] worldCounts) {
+        return LevelGenerator.ALL_LEVELS_MASK;
+    }
+
+    /**
+     * Number of levels this constraint still needs out of requiredLevels(). Once the
+     * open requirements reach the number of free positions, only required levels
+     * are drawn
+     * @param worldCounts Number of levels picked so far per world number
+     * @return Number of required levels still missing
+     */
+    default int outstandingLevels(int[] worldCounts) {
+        return 0;
+    }
+
+    /**
+     * Levels counted towards outstandingLevels()
+     * @return Bitmask over level codes, or 0 if this constraint requires no levels
+     */
+    default long requiredLevels() {
+        return 0L;
+    }
+
+    /**
+     * Whether this constraint takes part in picking levels. Only constraints that
+     * do are charged with level candidates in the report, so a seed slot rule's
+     * rejection rate is not diluted by levels it never looks at
+     * @return false for constraints that only restrict seed slots
+     */
+    default boolean restrictsLevels() {
+        return true;
+    }
+
+    /**
+     * Seed slot rule to apply once the levels have been picked
+     * @param worldCounts Number of levels picked per world number
+     * @return Seed slot constraint, or null if none applies to these levels
+     */
+    default SeedSlotConstraint seedSlotConstraint(int[] worldCounts) {
+        return null;
+    }
+
+    /**
+     * Gets a short description of this constraint for reports
+     * @return Description of the constraint
+     */
+    default String describe() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Requires at least a number of levels from a world
+     * @param world The world
+     * @param count Minimum number of levels
+     * @return The constraint
+     */
+    static PresetConstraint minLevelsIn(World world, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Level count must not be negative");
+        }
+        long mask = world.getLevelMask();
+        String description = "at least " + count + " " + world.getDisplayName() + " levels";
+        return new PresetConstraint() {
+            @Override
+            public int outstandingLevels(int[] worldCounts) {
+                return Math.max(0, count - worldCounts[world.getNumber()]);
+            }
+
+            @Override
+            public long requiredLevels() {
+                return mask;
+            }
+
+            @Override
+            public String describe() {
+                return description;
+            }
+        };
+    }
+
+    /**
+     * Allows at most a number of levels from a world
+     * @param world The world
+     * @param count Maximum number of levels; 0 excludes the world
+     * @return The constraint
+     */
+    static PresetConstraint maxLevelsIn(World world, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Level count must not be negative");
+        }
+        long mask = world.getLevelMask();
+        String description = "at most " + count + " " + world.getDisplayName() + " levels";
+        return new PresetConstraint() {
+            @Override
+            public long allowedLevels(long usedLevels, int[] worldCounts) {
+                return worldCounts[world.getNumber()] < count ? LevelGenerator.ALL_LEVELS_MASK
+                                                              : LevelGenerator.ALL_LEVELS_MASK & ~mask;
+            }
+
+            @Override
+            public String describe() {
+                return description;
+            }
+        };
+    }
+
+    /**
+     * Never picks the same level twice, so every world-level pair is distinct
+     * @return The constraint
+     */
+    static PresetConstraint distinctLevels() {
+        return new PresetConstraint() {
+            @Override
+            public long allowedLevels(long usedLevels, int[] worldCounts) {
+                return LevelGenerator.ALL_LEVELS_MASK & ~usedLevels;
+            }
+
+            @Override
+            public String describe() {
+                return "distinct levels";
+            }
+        };
+    }
+
+    /**
+     * Requires one of the given plants in the seed slots whenever the preset
+     * contains a level from a world, e.g. Flower Pot for Roof levels
+     * @param world The world
+     * @param plants Plant names
+     * @return The constraint
+     */
+    static PresetConstraint requirePlantsFor(World world, String... plants) {
+        SeedSlotConstraint required = SeedSlotConstraint.requireAnyOf(plants);
+        String description = "any of " + String.join(", ", plants) + " with " + world.getDisplayName() + " levels";
+        return new PresetConstraint() {
+            @Override
+            public SeedSlotConstraint seedSlotConstraint(int[] worldCounts) {
+                return worldCounts[world.getNumber()] > 0 ? required : null;
+            }
+
+            @Override
+            public boolean restrictsLevels() {
+                return false;
+            }
+
+            @Override
+            public String describe() {
+                return description;
+            }
+        };
+    }
+
+    /**
+     * Applies a seed slot constraint to every preset
+     * @param constraint The seed slot constraint
+     * @return The constraint
+     */
+    static PresetConstraint seedSlots(SeedSlotConstraint constraint) {
+        return new PresetConstraint() {
+            @Override
+            public SeedSlotConstraint seedSlotConstraint(int[] worldCounts) {
+                return constraint;
+            }
+
+            @Override
+            public boolean restrictsLevels() {
+                return false;
+            }
+
+            @Override
+            public String describe() {
+                return constraint.describe();
+            }
+        };
+    }
+}
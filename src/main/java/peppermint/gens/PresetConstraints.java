@@ -0,0 +1,163 @@
+package peppermint.gens;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable set of preset constraints together with the report of how often
+ * each of them pruned candidates. Pass it to PresetGenerator to generate presets
+ * that satisfy every constraint without regenerating whole presets.
+ */
+public final class PresetConstraints {
+    private static final int LEVEL_CANDIDATES = Long.bitCount(LevelGenerator.ALL_LEVELS_MASK);
+
+    private final PresetConstraint[] constraints;
+    private final ConstraintReport report;
+
+    private PresetConstraints(PresetConstraint[] constraints) {
+        this.constraints = constraints;
+        this.report = new ConstraintReport(constraints);
+    }
+
+    /**
+     * Creates a constraint set
+     * @param constraints Constraints every generated preset has to satisfy
+     * @return The constraint set
+     */
+    public static PresetConstraints of(PresetConstraint... constraints) {
+        return new PresetConstraints(constraints.clone());
+    }
+
+    public int size() {
+        return constraints.length;
+    }
+
+    public PresetConstraint get(int index) {
+        return constraints[index];
+    }
+
+    /**
+     * Gets the live report of rejections per constraint, shared by every preset
+     * generated with this set
+     * @return The report
+     */
+    public ConstraintReport getReport() {
+        return report;
+    }
+
+    /**
+     * Checks that the level requirements fit into the given number of levels
+     * @param levelCount Number of levels per preset
+     * @throws IllegalArgumentException if more levels are required than generated
+     */
+    void validate(int levelCount) {
+        int[] noLevels = new int[6];
+        int required = 0;
+        for (PresetConstraint constraint : constraints) {
+            required += constraint.outstandingLevels(noLevels);
+        }
+        if (required > levelCount) {
+            throw new IllegalArgumentException("Constraints require " + required + " levels but only "
+                                               + levelCount + " are generated");
+        }
+    }
+
+    /**
+     * Picks levels position by position from the levels every constraint allows
+     * @param levelGenerator Generator to draw levels with
+     * @param levelCodes Array receiving the level codes
+     * @param levelCount Number of levels to pick
+     * @return Number of picked levels per world number
+     * @throws IllegalStateException if no level is allowed at some position
+     */
+    int[] generateLevels(LevelGenerator levelGenerator, byte[] levelCodes, int levelCount) {
+        int[] worldCounts = new int[6];
+        long usedLevels = 0L;
+        // Levels each constraint lets through at the current position
+        long[] constraintAllows = new long[constraints.length];
+
+        for (int position = 0; position < levelCount; position++) {
+            long allowed = LevelGenerator.ALL_LEVELS_MASK;
+            long required = 0L;
+            int outstanding = 0;
+
+            for (int i = 0; i < constraints.length; i++) {
+                constraintAllows[i] = constraints[i].allowedLevels(usedLevels, worldCounts);
+                allowed &= constraintAllows[i];
+
+                int missing = constraints[i].outstandingLevels(worldCounts);
+                if (missing > 0) {
+                    outstanding += missing;
+                    required |= constraints[i].requiredLevels();
+                }
+            }
+
+            // Once the open requirements fill every free position, only required levels may be drawn
+            if (outstanding >= levelCount - position) {
+                for (int i = 0; i < constraints.length; i++) {
+                    if (constraints[i].outstandingLevels(worldCounts) > 0) {
+                        constraintAllows[i] &= constraints[i].requiredLevels();
+                    }
+                }
+                allowed &= required;
+            }
+
+            // Every level constraint saw all levels at this position and is charged with the ones it ruled out
+            for (int i = 0; i < constraints.length; i++) {
+                if (constraints[i].restrictsLevels()) {
+                    report.recordLevels(i, LEVEL_CANDIDATES,
+                                        Long.bitCount(LevelGenerator.ALL_LEVELS_MASK & ~constraintAllows[i]));
+                }
+            }
+
+            if (allowed == 0) {
+                throw new IllegalStateException("No level satisfies the preset constraints for level " + (position + 1));
+            }
+
+            int levelCode = levelGenerator.nextLevelCode(allowed);
+            levelCodes[position] = (byte) levelCode;
+            usedLevels |= 1L << levelCode;
+            worldCounts[LevelGenerator.getWorldOf(levelCode)]++;
+        }
+        return worldCounts;
+    }
+
+    /**
+     * Draws seed slots under the seed slot rules that apply to the picked levels
+     * @param seedSlotGenerator Generator to draw seed slots with
+     * @param numSlots Number of seed slots
+     * @param worldCounts Number of picked levels per world number
+     * @return Bitmask over the plant list
+     * @throws IllegalStateException if the seed slot rules cannot be satisfied
+     */
+    long generateSeedSlots(SeedSlotGenerator seedSlotGenerator, int numSlots, int[] worldCounts) {
+        List<SeedSlotConstraint> slotConstraints = new ArrayList<>(constraints.length);
+        int[] owners = new int[constraints.length];
+        for (int i = 0; i < constraints.length; i++) {
+            SeedSlotConstraint slotConstraint = constraints[i].seedSlotConstraint(worldCounts);
+            if (slotConstraint != null) {
+                owners[slotConstraints.size()] = i;
+                slotConstraints.add(slotConstraint);
+            }
+        }
+        if (slotConstraints.isEmpty()) {
+            return seedSlotGenerator.nextSeedSlotMask(numSlots);
+        }
+
+        long mask = seedSlotGenerator.nextSeedSlotMask(numSlots, slotConstraints.toArray(new SeedSlotConstraint[0]));
+        SeedSlotSampler sampler = seedSlotGenerator.getSampler();
+        for (int i = 0; i < slotConstraints.size(); i++) {
+            report.recordPlants(owners[i], sampler.getCandidatesDrawn(), sampler.getRejectedBy(i));
+        }
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        List<String> descriptions = new ArrayList<>(constraints.length);
+        for (PresetConstraint constraint : constraints) {
+            descriptions.add(constraint.describe());
+        }
+        return "PresetConstraints" + descriptions;
+    }
+}
@@ -0,0 +1,37 @@
+package peppermint.gens;
+
+/**
+ * Export formats supported by PresetWriter.
+ */
+public enum PresetFormat {
+    /** One JSON object per line */
+    NDJSON("ndjson"),
+    /** Header row, then one row per preset with list values separated by '|' */
+    CSV("csv"),
+    /** Short header, then one fixed-width PresetRecord per preset */
+    BINARY("pmpr");
+
+    private final String fileExtension;
+
+    PresetFormat(String fileExtension) {
+        this.fileExtension = fileExtension;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Looks up a format by name or file extension, ignoring case
+     * @param name Format name such as "ndjson", "csv" or "binary"
+     * @return The format
+     */
+    public static PresetFormat fromName(String name) {
+        for (PresetFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name) || format.fileExtension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown preset format: " + name);
+    }
+}
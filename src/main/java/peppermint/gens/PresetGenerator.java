@@ -1,14 +1,25 @@
 package peppermint.gens;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 
 public class PresetGenerator {
+    // Number of presets a single fork-join worker generates before it stops splitting
+    private static final int BULK_SPLIT_THRESHOLD = 512;
+
     private LevelGenerator levelGenerator;
     private PatternGenerator patternGenerator;
     private SeedSlotGenerator seedSlotGenerator;
-    private Random random;
+    private RandomGenerator random;
     
     public PresetGenerator() {
         this.levelGenerator = new LevelGenerator();
@@ -16,6 +27,18 @@ public class PresetGenerator {
         this.seedSlotGenerator = new SeedSlotGenerator();
         this.random = new Random();
     }
+
+    /**
+     * Creates a preset generator whose level, pattern and seed slot generators
+     * all draw from the given random source
+     * @param random Random source to use, e.g. a per-worker SplittableRandom
+     */
+    public PresetGenerator(RandomGenerator random) {
+        this.levelGenerator = new LevelGenerator(random);
+        this.patternGenerator = new PatternGenerator(random);
+        this.seedSlotGenerator = new SeedSlotGenerator(random);
+        this.random = random;
+    }
     
     /**
      * Generates a complete preset with levels, patterns, and seed slots
@@ -62,6 +85,264 @@ public class PresetGenerator {
         return preset;
     }
     
+    /**
+     * Generates a complete preset using the given options
+     * @param options Options describing the preset to generate
+     * @return Complete preset with levels, patterns, and seed slots
+     */
+    public Preset generatePreset(GenerationOptions options) {
+        return generatePreset(options.getNumLevels(), options.isGenerateLevels(),
+                              options.getNumSeedSlots(), options.isGeneratePatternForEveryLevel());
+    }
+
+    /**
+     * Deterministically generates the preset identified by a run seed. The seed derives
+     * independent streams for levels, patterns and seed slots, so the same seed and
+     * options always yield the same preset
+     * @param runSeed 64-bit run seed (see RunSeed)
+     * @param options Options describing the preset to generate
+     * @return Complete preset tagged with its run seed
+     */
+    public Preset generatePreset(long runSeed, GenerationOptions options) {
+        Preset preset = withRunSeed(runSeed, () -> generatePreset(options));
+        preset.setRunSeed(runSeed);
+        return preset;
+    }
+
+    /**
+     * Generates a preset directly in compact form. No level, pattern or plant
+     * strings are created; the draws match generatePreset for the same random state
+     * @param options Options describing the preset to generate
+     * @return Compact preset
+     */
+    public CompactPreset generateCompactPreset(GenerationOptions options) {
+        return generateCompactPreset(options, 0L, false);
+    }
+
+    /**
+     * Deterministically generates the compact preset identified by a run seed
+     * @param runSeed 64-bit run seed (see RunSeed)
+     * @param options Options describing the preset to generate
+     * @return Compact preset tagged with its run seed
+     */
+    public CompactPreset generateCompactPreset(long runSeed, GenerationOptions options) {
+        return withRunSeed(runSeed, () -> generateCompactPreset(options, runSeed, true));
+    }
+
+    /**
+     * Generates a preset that satisfies every constraint. Constraints prune the levels
+     * and plants that can be drawn, so no preset is generated and then thrown away;
+     * the set's report records how often each constraint pruned a candidate
+     * @param options Options describing the preset to generate
+     * @param constraints Constraints the preset has to satisfy
+     * @return Complete preset with levels, patterns, and seed slots
+     * @throws IllegalArgumentException if the constraints require more levels than generated
+     * @throws IllegalStateException if the constraints cannot be satisfied together
+     */
+    public Preset generatePreset(GenerationOptions options, PresetConstraints constraints) {
+        return generateCompactPreset(options, constraints).toPreset();
+    }
+
+    /**
+     * Deterministically generates the constrained preset identified by a run seed
+     * @param runSeed 64-bit run seed (see RunSeed)
+     * @param options Options describing the preset to generate
+     * @param constraints Constraints the preset has to satisfy
+     * @return Complete preset tagged with its run seed
+     */
+    public Preset generatePreset(long runSeed, GenerationOptions options, PresetConstraints constraints) {
+        return generateCompactPreset(runSeed, options, constraints).toPreset();
+    }
+
+    /**
+     * Generates a preset that satisfies every constraint, in compact form
+     * @param options Options describing the preset to generate
+     * @param constraints Constraints the preset has to satisfy
+     * @return Compact preset
+     */
+    public CompactPreset generateCompactPreset(GenerationOptions options, PresetConstraints constraints) {
+        return generateCompactPreset(options, constraints, 0L, false);
+    }
+
+    /**
+     * Deterministically generates the constrained compact preset identified by a run seed
+     * @param runSeed 64-bit run seed (see RunSeed)
+     * @param options Options describing the preset to generate
+     * @param constraints Constraints the preset has to satisfy
+     * @return Compact preset tagged with its run seed
+     */
+    public CompactPreset generateCompactPreset(long runSeed, GenerationOptions options, PresetConstraints constraints) {
+        return withRunSeed(runSeed, () -> generateCompactPreset(options, constraints, runSeed, true));
+    }
+
+    private CompactPreset generateCompactPreset(GenerationOptions options, long runSeed, boolean seeded) {
+        int levelCount = getLevelCount(options);
+        byte[] levelsAndPatterns = new byte[levelCount * 2];
+
+        for (int i = 0; i < levelCount; i++) {
+            levelsAndPatterns[i] = (byte) levelGenerator.nextLevelCode();
+        }
+        fillPatterns(options, levelsAndPatterns, levelCount);
+
+        long seedSlotMask = seedSlotGenerator.nextSeedSlotMask(options.getNumSeedSlots());
+        return new CompactPreset(levelsAndPatterns, seedSlotMask, seedSlotGenerator.getSampler().getDrawOrder(),
+                                 runSeed, seeded);
+    }
+
+    private CompactPreset generateCompactPreset(GenerationOptions options, PresetConstraints constraints,
+                                                long runSeed, boolean seeded) {
+        int levelCount = getLevelCount(options);
+        constraints.validate(levelCount);
+        byte[] levelsAndPatterns = new byte[levelCount * 2];
+
+        try {
+            int[] worldCounts = constraints.generateLevels(levelGenerator, levelsAndPatterns, levelCount);
+            fillPatterns(options, levelsAndPatterns, levelCount);
+            long seedSlotMask = constraints.generateSeedSlots(seedSlotGenerator, options.getNumSeedSlots(), worldCounts);
+
+            constraints.getReport().recordPreset();
+            return new CompactPreset(levelsAndPatterns, seedSlotMask, seedSlotGenerator.getSampler().getDrawOrder(),
+                                     runSeed, seeded);
+        } catch (IllegalStateException e) {
+            constraints.getReport().recordFailure();
+            throw e;
+        }
+    }
+
+    private static int getLevelCount(GenerationOptions options) {
+        return options.isGenerateLevels() ? Math.max(0, Math.min(options.getNumLevels(), 12)) : 0;
+    }
+
+    /**
+     * Picks the patterns for levels already stored in the first half of the array
+     */
+    private void fillPatterns(GenerationOptions options, byte[] levelsAndPatterns, int levelCount) {
+        if (levelCount == 0) {
+            return;
+        }
+        if (options.isGeneratePatternForEveryLevel()) {
+            for (int i = 0; i < levelCount; i++) {
+                levelsAndPatterns[levelCount + i] = (byte) patternGenerator.nextPatternOrdinal(World.fromLevelCode(levelsAndPatterns[i]));
+            }
+        } else {
+            // Generate one pattern for all levels
+            byte pattern = (byte) patternGenerator.nextPatternOrdinal(World.fromLevelCode(levelsAndPatterns[0]));
+            for (int i = 0; i < levelCount; i++) {
+                levelsAndPatterns[levelCount + i] = pattern;
+            }
+        }
+    }
+
+    /**
+     * Runs a generation step with the level, pattern and seed slot generators switched
+     * to the independent streams derived from a run seed, then restores their randoms
+     */
+    private <T> T withRunSeed(long runSeed, Supplier<T> generation) {
+        RandomGenerator levelRandom = levelGenerator.getRandom();
+        RandomGenerator patternRandom = patternGenerator.getRandom();
+        RandomGenerator seedSlotRandom = seedSlotGenerator.getRandom();
+
+        SplittableRandom[] streams = RunSeed.deriveStreams(runSeed);
+        levelGenerator.setRandom(streams[0]);
+        patternGenerator.setRandom(streams[1]);
+        seedSlotGenerator.setRandom(streams[2]);
+        try {
+            return generation.get();
+        } finally {
+            levelGenerator.setRandom(levelRandom);
+            patternGenerator.setRandom(patternRandom);
+            seedSlotGenerator.setRandom(seedSlotRandom);
+        }
+    }
+
+    /**
+     * Generates many presets at once, splitting the work across all cores of the common fork-join pool
+     * @param count Number of presets to generate
+     * @param options Options describing the presets to generate
+     * @return Result holding the generated presets and throughput statistics
+     */
+    public BulkResult generatePresets(int count, GenerationOptions options) {
+        return generatePresets(count, options, random.nextLong(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Generates many presets at once on the given fork-join pool
+     * @param count Number of presets to generate
+     * @param options Options describing the presets to generate
+     * @param pool Fork-join pool to run the workers on
+     * @return Result holding the generated presets and throughput statistics
+     */
+    public BulkResult generatePresets(int count, GenerationOptions options, ForkJoinPool pool) {
+        return generatePresets(count, options, random.nextLong(), pool);
+    }
+
+    /**
+     * Generates a reproducible batch of presets. The same batch seed, count and options
+     * always yield the same presets in the same order
+     * @param count Number of presets to generate
+     * @param options Options describing the presets to generate
+     * @param batchSeed Seed the per-preset run seeds are drawn from
+     * @return Result holding the generated presets and throughput statistics
+     */
+    public BulkResult generatePresets(int count, GenerationOptions options, long batchSeed) {
+        return generatePresets(count, options, batchSeed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Generates many presets at once on the given fork-join pool. Every worker draws
+     * run seeds from its own SplittableRandom, split off from a root generator, so
+     * each preset in the batch can be regenerated on its own from its run seed
+     * @param count Number of presets to generate
+     * @param options Options describing the presets to generate
+     * @param batchSeed Seed the per-preset run seeds are drawn from
+     * @param pool Fork-join pool to run the workers on
+     * @return Result holding the generated presets and throughput statistics
+     */
+    public BulkResult generatePresets(int count, GenerationOptions options, long batchSeed, ForkJoinPool pool) {
+        return generatePresets(count, options, null, batchSeed, pool);
+    }
+
+    /**
+     * Generates a reproducible batch of presets that all satisfy the given constraints.
+     * Rejections from every worker are collected in the constraint set's report
+     * @param count Number of presets to generate
+     * @param options Options describing the presets to generate
+     * @param constraints Constraints every preset has to satisfy
+     * @param batchSeed Seed the per-preset run seeds are drawn from
+     * @return Result holding the generated presets and throughput statistics
+     */
+    public BulkResult generatePresets(int count, GenerationOptions options, PresetConstraints constraints, long batchSeed) {
+        return generatePresets(count, options, constraints, batchSeed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Generates a reproducible batch of constrained presets on the given fork-join pool
+     * @param count Number of presets to generate
+     * @param options Options describing the presets to generate
+     * @param constraints Constraints every preset has to satisfy, or null for none
+     * @param batchSeed Seed the per-preset run seeds are drawn from
+     * @param pool Fork-join pool to run the workers on
+     * @return Result holding the generated presets and throughput statistics
+     */
+    public BulkResult generatePresets(int count, GenerationOptions options, PresetConstraints constraints,
+                                      long batchSeed, ForkJoinPool pool) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Preset count must not be negative");
+        }
+        if (constraints != null) {
+            constraints.validate(getLevelCount(options));
+        }
+
+        CompactPreset[] presets = new CompactPreset[count];
+        long start = System.nanoTime();
+        if (count > 0) {
+            pool.invoke(new BulkTask(presets, 0, count, new SplittableRandom(batchSeed), options, constraints));
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        return new BulkResult(presets, elapsedNanos, pool.getParallelism());
+    }
+
     /**
      * Generates a preset with random parameters
      * @return Complete preset with randomly generated parameters
@@ -89,6 +370,8 @@ public class PresetGenerator {
         private List<String> levels;
         private List<String> patterns;
         private List<String> seedSlots;
+        private long runSeed;
+        private boolean seeded;
         
         public Preset() {
             this.levels = new ArrayList<>();
@@ -119,6 +402,26 @@ public class PresetGenerator {
         public void setSeedSlots(List<String> seedSlots) {
             this.seedSlots = seedSlots;
         }
+
+        /**
+         * Whether this preset was generated from a run seed and can be regenerated from it
+         * @return true if a run seed is available
+         */
+        public boolean hasRunSeed() {
+            return seeded;
+        }
+
+        public long getRunSeed() {
+            if (!seeded) {
+                throw new IllegalStateException("Preset was not generated from a run seed");
+            }
+            return runSeed;
+        }
+
+        public void setRunSeed(long runSeed) {
+            this.runSeed = runSeed;
+            this.seeded = true;
+        }
         
         /**
          * Gets the complete preset as formatted strings for display
@@ -146,6 +449,111 @@ public class PresetGenerator {
         }
     }
     
+    /**
+     * Result of a bulk generation run. Presets are held in compact form and only
+     * expanded into strings when read through getPresets()
+     */
+    public static class BulkResult {
+        private final CompactPreset[] presets;
+        private final long elapsedNanos;
+        private final int parallelism;
+
+        BulkResult(CompactPreset[] presets, long elapsedNanos, int parallelism) {
+            this.presets = presets;
+            this.elapsedNanos = elapsedNanos;
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * Gets the generated presets in compact form
+         * @return Read-only list of compact presets
+         */
+        public List<CompactPreset> getCompactPresets() {
+            return Collections.unmodifiableList(Arrays.asList(presets));
+        }
+
+        /**
+         * Gets the generated presets as a view that expands each preset on access
+         * @return Read-only list of presets
+         */
+        public List<Preset> getPresets() {
+            return new AbstractList<Preset>() {
+                @Override
+                public Preset get(int index) {
+                    return presets[index].toPreset();
+                }
+
+                @Override
+                public int size() {
+                    return presets.length;
+                }
+            };
+        }
+
+        public int getCount() {
+            return presets.length;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        /**
+         * Gets the generation throughput of this run
+         * @return Number of presets generated per second
+         */
+        public double getPresetsPerSecond() {
+            if (elapsedNanos <= 0) {
+                return 0.0;
+            }
+            return presets.length * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+
+    /**
+     * Fork-join task that fills a range of the output array. Ranges are halved until
+     * they drop below the split threshold, and every half gets its own split random
+     */
+    private static class BulkTask extends RecursiveAction {
+        private final CompactPreset[] out;
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+        private final GenerationOptions options;
+        private final PresetConstraints constraints;
+
+        BulkTask(CompactPreset[] out, int from, int to, SplittableRandom random,
+                 GenerationOptions options, PresetConstraints constraints) {
+            this.out = out;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+            this.options = options;
+            this.constraints = constraints;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BULK_SPLIT_THRESHOLD) {
+                PresetGenerator worker = new PresetGenerator(random);
+                for (int i = from; i < to; i++) {
+                    out[i] = constraints == null
+                        ? worker.generateCompactPreset(random.nextLong(), options)
+                        : worker.generateCompactPreset(random.nextLong(), options, constraints);
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new BulkTask(out, from, mid, random.split(), options, constraints),
+                      new BulkTask(out, mid, to, random, options, constraints));
+        }
+    }
+
     public static void main(String[] args) {
         PresetGenerator generator = new PresetGenerator();
         
@@ -164,5 +572,33 @@ public class PresetGenerator {
         for (String line : formattedPreset2) {
             System.out.println(line);
         }
+
+        System.out.println("\nRegenerating a preset from its run seed:");
+        GenerationOptions options = new GenerationOptions(12, true, 8, true);
+        long runSeed = RunSeed.newSeed();
+        Preset seeded = generator.generatePreset(runSeed, options);
+        Preset regenerated = generator.generatePreset(RunSeed.decode(RunSeed.encode(runSeed)), options);
+        System.out.println("Run seed " + RunSeed.encode(runSeed) + " reproducible: "
+                           + seeded.getFormattedPreset().equals(regenerated.getFormattedPreset()));
+
+        CompactPreset compact = generator.generateCompactPreset(runSeed, options);
+        System.out.println("Compact form matches: " + compact.getLevels().equals(seeded.getLevels())
+                           + " (" + compact.getLevelCount() * 2 + " bytes + seed slot mask)");
+
+        System.out.println("\nGenerating bulk presets:");
+        BulkResult bulk = generator.generatePresets(100_000, options);
+        System.out.printf("Generated %d presets on %d workers in %.1f ms (%.0f presets/sec)%n",
+                          bulk.getCount(), bulk.getParallelism(),
+                          bulk.getElapsedNanos() / 1_000_000.0, bulk.getPresetsPerSecond());
+
+        System.out.println("\nGenerating constrained presets:");
+        PresetConstraints constraints = PresetConstraints.of(
+            PresetConstraint.minLevelsIn(World.POOL, 3),
+            PresetConstraint.distinctLevels(),
+            PresetConstraint.minLevelsIn(World.ROOF, 1),
+            PresetConstraint.requirePlantsFor(World.ROOF, "Flower Pot"),
+            PresetConstraint.seedSlots(SeedSlotConstraint.requireSunProducer()));
+        generator.generatePresets(100_000, options, constraints, runSeed);
+        System.out.print(constraints.getReport());
     }
 }
\ No newline at end of file
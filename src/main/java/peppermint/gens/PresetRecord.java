@@ -0,0 +1,88 @@
+package peppermint.gens;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-width binary encoding of a CompactPreset, shared by the binary export
+ * format and the preset archive. All values are big-endian.
+ *
+ * <pre>
+ * offset  size  field
+ *      0     8  run seed (0 if the preset has none)
+ *      8     8  seed slot mask over the plant list
+ *     16     1  flags (bit 0: run seed present)
+ *     17     1  level count (0-12)
+ *     18    12  level codes, zero padded
+ *     30    12  pattern ordinals, zero padded
+ *     42     6  seed slot draw order, 4 bits per slot (see CompactPreset);
+ *               zero in records written before it was stored
+ * </pre>
+ */
+public final class PresetRecord {
+    /** Size of one encoded preset in bytes */
+    public static final int SIZE = 48;
+
+    private static final int MAX_LEVELS = 12;
+    private static final int FLAG_SEEDED = 1;
+
+    private static final int SEED_OFFSET = 0;
+    private static final int MASK_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 16;
+    private static final int LEVEL_COUNT_OFFSET = 17;
+    private static final int LEVELS_OFFSET = 18;
+    private static final int PATTERNS_OFFSET = LEVELS_OFFSET + MAX_LEVELS;
+    private static final int ORDER_OFFSET = PATTERNS_OFFSET + MAX_LEVELS;
+
+    private PresetRecord() {
+    }
+
+    /**
+     * Writes a preset at the buffer's current position and advances it by SIZE bytes
+     * @param preset The preset to encode
+     * @param buffer Target buffer with at least SIZE bytes remaining
+     */
+    public static void write(CompactPreset preset, ByteBuffer buffer) {
+        int start = buffer.position();
+        int levelCount = preset.getLevelCount();
+
+        buffer.putLong(start + SEED_OFFSET, preset.hasRunSeed() ? preset.getRunSeed() : 0L);
+        buffer.putLong(start + MASK_OFFSET, preset.getSeedSlotMask());
+        buffer.put(start + FLAGS_OFFSET, (byte) (preset.hasRunSeed() ? FLAG_SEEDED : 0));
+        buffer.put(start + LEVEL_COUNT_OFFSET, (byte) levelCount);
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            boolean present = i < levelCount;
+            buffer.put(start + LEVELS_OFFSET + i, present ? (byte) preset.getLevelCode(i) : 0);
+            buffer.put(start + PATTERNS_OFFSET + i, present ? (byte) preset.getPatternOrdinal(i) : 0);
+        }
+        // 48 bits of the order, enough for 12 slots
+        long order = preset.getSeedSlotOrder();
+        buffer.putShort(start + ORDER_OFFSET, (short) (order >>> 32));
+        buffer.putInt(start + ORDER_OFFSET + 2, (int) order);
+        buffer.position(start + SIZE);
+    }
+
+    /**
+     * Reads a preset at an absolute offset without moving the buffer's position
+     * @param buffer Source buffer
+     * @param offset Offset of the record in the buffer
+     * @return The decoded preset
+     */
+    public static CompactPreset read(ByteBuffer buffer, int offset) {
+        int levelCount = buffer.get(offset + LEVEL_COUNT_OFFSET);
+        if (levelCount < 0 || levelCount > MAX_LEVELS) {
+            throw new IllegalArgumentException("Corrupt preset record: level count " + levelCount);
+        }
+
+        byte[] levelsAndPatterns = new byte[levelCount * 2];
+        for (int i = 0; i < levelCount; i++) {
+            levelsAndPatterns[i] = buffer.get(offset + LEVELS_OFFSET + i);
+            levelsAndPatterns[levelCount + i] = buffer.get(offset + PATTERNS_OFFSET + i);
+        }
+
+        boolean seeded = (buffer.get(offset + FLAGS_OFFSET) & FLAG_SEEDED) != 0;
+        long order = (buffer.getShort(offset + ORDER_OFFSET) & 0xFFFFL) << 32
+                   | (buffer.getInt(offset + ORDER_OFFSET + 2) & 0xFFFFFFFFL);
+        return new CompactPreset(levelsAndPatterns, buffer.getLong(offset + MASK_OFFSET), order,
+                                 buffer.getLong(offset + SEED_OFFSET), seeded);
+    }
+}
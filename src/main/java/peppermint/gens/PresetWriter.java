@@ -0,0 +1,314 @@
+package peppermint.gens;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams presets to a channel as they are generated. Output goes through one
+ * fixed-size direct buffer, and level, pattern and plant names are encoded once
+ * per JVM, so memory use does not grow with the number of presets written.
+ *
+ * Formats:
+ * - NDJSON: {"seed":"...","levels":[...],"patterns":[...],"seedSlots":[...]} per line
+ * - CSV: seed,levels,patterns,seed_slots with list values separated by '|'
+ * - BINARY: 8-byte header ("PMPR", version, record size) followed by one
+ *   PresetRecord per preset
+ *
+ * Seed slots are written in the order they were drawn. A writer is not thread-safe.
+ */
+public class PresetWriter implements Closeable {
+    /** Magic number at the start of a binary export ("PMPR") */
+    public static final int BINARY_MAGIC = 0x504D5052;
+    /** Version of the binary export layout */
+    public static final short BINARY_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] CSV_HEADER = "seed,levels,patterns,seed_slots\n".getBytes(StandardCharsets.UTF_8);
+
+    // Names pre-encoded as quoted JSON strings and as escaped CSV values
+    private static final byte[][] LEVEL_JSON = new byte[61][];
+    private static final byte[][] LEVEL_CSV = new byte[61][];
+    private static final byte[][] PATTERN_JSON = new byte[PatternGenerator.getPatternCount()][];
+    private static final byte[][] PATTERN_CSV = new byte[PatternGenerator.getPatternCount()][];
+    private static final byte[][] PLANT_JSON = new byte[SeedSlotGenerator.getPlantCount()][];
+    private static final byte[][] PLANT_CSV = new byte[SeedSlotGenerator.getPlantCount()][];
+
+    static {
+        for (int code = 11; code < LEVEL_JSON.length; code++) {
+            String name = LevelGenerator.getLevelName(code);
+            LEVEL_JSON[code] = jsonString(name);
+            LEVEL_CSV[code] = csvValue(name);
+        }
+        for (int i = 0; i < PATTERN_JSON.length; i++) {
+            PATTERN_JSON[i] = jsonString(PatternGenerator.getPatternName(i));
+            PATTERN_CSV[i] = csvValue(PatternGenerator.getPatternName(i));
+        }
+        for (int i = 0; i < PLANT_JSON.length; i++) {
+            PLANT_JSON[i] = jsonString(SeedSlotGenerator.getPlantName(i));
+            PLANT_CSV[i] = csvValue(SeedSlotGenerator.getPlantName(i));
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final PresetFormat format;
+    private final ByteBuffer buffer;
+    private final byte[] seedCode = new byte[RunSeed.CODE_LENGTH];
+    private long presetsWritten;
+    private boolean closed;
+
+    /**
+     * Creates a writer and writes the format's header, if it has one
+     * @param channel Target channel; closed when the writer is closed
+     * @param format Output format
+     * @throws IOException if the header cannot be written
+     */
+    public PresetWriter(WritableByteChannel channel, PresetFormat format) throws IOException {
+        this.channel = channel;
+        this.format = format;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        writeHeader();
+    }
+
+    /**
+     * Opens a writer on a file, replacing any existing content
+     * @param path Target file
+     * @param format Output format
+     * @return A new writer that owns the file channel
+     * @throws IOException if the file cannot be opened
+     */
+    public static PresetWriter open(Path path, PresetFormat format) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                               StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            return new PresetWriter(channel, format);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a preset
+     * @param preset The preset to write
+     * @throws IOException if writing to the channel fails
+     */
+    public void write(CompactPreset preset) throws IOException {
+        ensureOpen();
+        switch (format) {
+            case NDJSON:
+                writeNdjson(preset);
+                break;
+            case CSV:
+                writeCsv(preset);
+                break;
+            case BINARY:
+                ensure(PresetRecord.SIZE);
+                PresetRecord.write(preset, buffer);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported format: " + format);
+        }
+        presetsWritten++;
+    }
+
+    /**
+     * Writes a string-based preset by converting it to its compact form
+     * @param preset The preset to write
+     * @throws IOException if writing to the channel fails
+     */
+    public void write(PresetGenerator.Preset preset) throws IOException {
+        write(CompactPreset.of(preset));
+    }
+
+    /**
+     * Writes every preset of a bulk result
+     * @param result The bulk result to write
+     * @throws IOException if writing to the channel fails
+     */
+    public void writeAll(PresetGenerator.BulkResult result) throws IOException {
+        for (CompactPreset preset : result.getCompactPresets()) {
+            write(preset);
+        }
+    }
+
+    /**
+     * Writes any buffered output to the channel
+     * @throws IOException if writing to the channel fails
+     */
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+    }
+
+    public long getPresetsWritten() {
+        return presetsWritten;
+    }
+
+    public PresetFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Flushes buffered output and closes the channel
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        if (format == PresetFormat.CSV) {
+            put(CSV_HEADER);
+        } else if (format == PresetFormat.BINARY) {
+            ensure(8);
+            buffer.putInt(BINARY_MAGIC);
+            buffer.putShort(BINARY_VERSION);
+            buffer.putShort((short) PresetRecord.SIZE);
+        }
+    }
+
+    private void writeNdjson(CompactPreset preset) throws IOException {
+        put("{\"seed\":");
+        if (preset.hasRunSeed()) {
+            put('"');
+            putSeedCode(preset.getRunSeed());
+            put('"');
+        } else {
+            put("null");
+        }
+
+        int levelCount = preset.getLevelCount();
+        put(",\"levels\":[");
+        for (int i = 0; i < levelCount; i++) {
+            if (i > 0) {
+                put(',');
+            }
+            put(LEVEL_JSON[preset.getLevelCode(i)]);
+        }
+        put("],\"patterns\":[");
+        for (int i = 0; i < levelCount; i++) {
+            if (i > 0) {
+                put(',');
+            }
+            put(PATTERN_JSON[preset.getPatternOrdinal(i)]);
+        }
+        put("],\"seedSlots\":[");
+        int slotCount = preset.getSeedSlotCount();
+        for (int i = 0; i < slotCount; i++) {
+            if (i > 0) {
+                put(',');
+            }
+            put(PLANT_JSON[preset.getSeedSlotPlant(i)]);
+        }
+        put("]}\n");
+    }
+
+    private void writeCsv(CompactPreset preset) throws IOException {
+        if (preset.hasRunSeed()) {
+            putSeedCode(preset.getRunSeed());
+        }
+
+        int levelCount = preset.getLevelCount();
+        put(",\"");
+        for (int i = 0; i < levelCount; i++) {
+            if (i > 0) {
+                put('|');
+            }
+            put(LEVEL_CSV[preset.getLevelCode(i)]);
+        }
+        put("\",\"");
+        for (int i = 0; i < levelCount; i++) {
+            if (i > 0) {
+                put('|');
+            }
+            put(PATTERN_CSV[preset.getPatternOrdinal(i)]);
+        }
+        put("\",\"");
+        int slotCount = preset.getSeedSlotCount();
+        for (int i = 0; i < slotCount; i++) {
+            if (i > 0) {
+                put('|');
+            }
+            put(PLANT_CSV[preset.getSeedSlotPlant(i)]);
+        }
+        put("\"\n");
+    }
+
+    private void putSeedCode(long runSeed) throws IOException {
+        RunSeed.encode(runSeed, seedCode);
+        put(seedCode);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Puts an ASCII literal
+     */
+    private void put(String ascii) throws IOException {
+        ensure(ascii.length());
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer.put((byte) ascii.charAt(i));
+        }
+    }
+
+    private void put(char ascii) throws IOException {
+        ensure(1);
+        buffer.put((byte) ascii);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Preset writer is closed");
+        }
+    }
+
+    private static byte[] jsonString(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.append('"').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Escapes a value for use inside a quoted CSV field
+     */
+    private static byte[] csvValue(String value) {
+        return value.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8);
+    }
+}
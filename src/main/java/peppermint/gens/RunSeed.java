@@ -0,0 +1,110 @@
+package peppermint.gens;
+
+import java.util.SplittableRandom;
+
+/**
+ * Helpers for 64-bit run seeds. A run seed fully determines a preset for a given
+ * set of GenerationOptions, so presets can be shared and stored as the seed alone.
+ * Seeds are shared as 13-character Crockford base32 codes (e.g. "0M8ZQ3X7N1K2P").
+ */
+public final class RunSeed {
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    static final int CODE_LENGTH = 13; // ceil(64 / 5)
+
+    private static final SplittableRandom SEED_SOURCE = new SplittableRandom();
+
+    private RunSeed() {
+    }
+
+    /**
+     * Creates a new random run seed
+     * @return A fresh 64-bit run seed
+     */
+    public static synchronized long newSeed() {
+        return SEED_SOURCE.nextLong();
+    }
+
+    /**
+     * Derives the independent level, pattern and seed slot streams of a run
+     * @param runSeed The run seed
+     * @return Array of three random streams: levels, patterns, seed slots
+     */
+    static SplittableRandom[] deriveStreams(long runSeed) {
+        SplittableRandom root = new SplittableRandom(runSeed);
+        return new SplittableRandom[] { root.split(), root.split(), root.split() };
+    }
+
+    /**
+     * Encodes a run seed as a shareable code
+     * @param runSeed The run seed to encode
+     * @return 13-character Crockford base32 code
+     */
+    public static String encode(long runSeed) {
+        char[] code = new char[CODE_LENGTH];
+        long value = runSeed;
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            code[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(code);
+    }
+
+    /**
+     * Encodes a run seed as ASCII bytes without allocating, for bulk exports
+     * @param runSeed The run seed to encode
+     * @param target Array of at least 13 bytes receiving the code
+     */
+    static void encode(long runSeed, byte[] target) {
+        long value = runSeed;
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            target[i] = (byte) ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+    }
+
+    /**
+     * Decodes a shareable code back into a run seed. Decoding is case-insensitive,
+     * ignores dashes and spaces, and reads I/L as 1 and O as 0
+     * @param code The code to decode
+     * @return The run seed
+     */
+    public static long decode(String code) {
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            int digit = digitOf(c);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid character in run seed: " + c);
+            }
+            if ((value >>> 59) != 0) {
+                throw new IllegalArgumentException("Run seed out of range: " + code);
+            }
+            value = (value << 5) | digit;
+            digits++;
+        }
+        if (digits == 0) {
+            throw new IllegalArgumentException("Run seed is empty");
+        }
+        return value;
+    }
+
+    private static int digitOf(char c) {
+        char upper = Character.toUpperCase(c);
+        switch (upper) {
+            case 'O': return 0;
+            case 'I':
+            case 'L': return 1;
+            default:
+                for (int i = 0; i < ALPHABET.length; i++) {
+                    if (ALPHABET[i] == upper) {
+                        return i;
+                    }
+                }
+                return -1;
+        }
+    }
+}
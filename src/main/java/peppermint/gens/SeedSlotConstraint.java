@@ -0,0 +1,136 @@
+package peppermint.gens;
+
+/**
+ * A rule the seed slot sampler checks while drawing plants. Rules are applied per
+ * pick: a rejected plant is set aside for the current slot only, so the draw never
+ * has to restart. Plants are identified by their index in the plant list, and the
+ * plants chosen so far are passed as a bitmask over that list.
+ */
+public interface SeedSlotConstraint {
+
+    /**
+     * Whether a plant may be added to the current selection
+     * @param plantIndex Index of the candidate plant
+     * @param chosenMask Bitmask of the plants already selected
+     * @return true if the plant is allowed
+     */
+    default boolean allows(int plantIndex, long chosenMask) {
+        return true;
+    }
+
+    /**
+     * Plants this constraint rules out regardless of the selection. The sampler
+     * removes them from the candidate pool before drawing, so they are never picked
+     * @return Bitmask over the plant list, or 0 if nothing is always excluded
+     */
+    default long excludedPlants() {
+        return 0L;
+    }
+
+    /**
+     * Plants of which at least one must end up in the selection. Once the number of
+     * open requirements reaches the number of free slots, the sampler only draws
+     * plants that satisfy one of them
+     * @return Bitmask over the plant list, or 0 if this constraint requires nothing
+     */
+    default long requiredAnyOf() {
+        return 0L;
+    }
+
+    /**
+     * Gets a short description of this constraint for reports
+     * @return Description of the constraint
+     */
+    default String describe() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Requires at least one of the given plants
+     * @param plants Plant names
+     * @return The constraint
+     */
+    static SeedSlotConstraint requireAnyOf(String... plants) {
+        long mask = maskOf(plants);
+        String description = "require any of " + String.join(", ", plants);
+        return new SeedSlotConstraint() {
+            @Override
+            public long requiredAnyOf() {
+                return mask;
+            }
+
+            @Override
+            public String describe() {
+                return description;
+            }
+        };
+    }
+
+    /**
+     * Requires at least one sun producing plant (Sunflower, Sun-shroom or Twin Sunflower)
+     * @return The constraint
+     */
+    static SeedSlotConstraint requireSunProducer() {
+        return requireAnyOf("Sunflower", "Sun-shroom", "Twin Sunflower");
+    }
+
+    /**
+     * Never selects any of the given plants
+     * @param plants Plant names
+     * @return The constraint
+     */
+    static SeedSlotConstraint exclude(String... plants) {
+        long mask = maskOf(plants);
+        String description = "exclude " + String.join(", ", plants);
+        return new SeedSlotConstraint() {
+            @Override
+            public boolean allows(int plantIndex, long chosenMask) {
+                return (mask & (1L << plantIndex)) == 0;
+            }
+
+            @Override
+            public long excludedPlants() {
+                return mask;
+            }
+
+            @Override
+            public String describe() {
+                return description;
+            }
+        };
+    }
+
+    /**
+     * Selects at most one plant out of the given group, e.g. to keep the Imitater
+     * from doubling up a plant it would copy
+     * @param plants Plant names
+     * @return The constraint
+     */
+    static SeedSlotConstraint atMostOneOf(String... plants) {
+        long mask = maskOf(plants);
+        String description = "at most one of " + String.join(", ", plants);
+        return new SeedSlotConstraint() {
+            @Override
+            public boolean allows(int plantIndex, long chosenMask) {
+                return (mask & (1L << plantIndex)) == 0 || (mask & chosenMask) == 0;
+            }
+
+            @Override
+            public String describe() {
+                return description;
+            }
+        };
+    }
+
+    private static long maskOf(String... plants) {
+        long mask = 0L;
+        for (String plant : plants) {
+            int index = SeedSlotGenerator.getPlantIndex(plant);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown plant: " + plant);
+            }
+            mask |= 1L << index;
+        }
+        return mask;
+    }
+}
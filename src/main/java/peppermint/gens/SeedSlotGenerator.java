@@ -1,11 +1,13 @@
 package peppermint.gens;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class SeedSlotGenerator {
-    private Random random;
+    private RandomGenerator random;
     
     // List of all possible plants
     private static final String[] PLANT_LIST = {
@@ -22,46 +24,124 @@ public class SeedSlotGenerator {
         "Imitater"
     };
     
+    private static final SeedSlotConstraint[] NO_CONSTRAINTS = new SeedSlotConstraint[0];
+
+    private final SeedSlotSampler sampler = new SeedSlotSampler(PLANT_LIST.length);
+
     public SeedSlotGenerator() {
         this.random = new Random();
     }
+
+    /**
+     * Creates a generator that draws from the given random source
+     * @param random Random source to use, e.g. a per-worker SplittableRandom
+     */
+    public SeedSlotGenerator(RandomGenerator random) {
+        this.random = random;
+    }
     
+    RandomGenerator getRandom() {
+        return random;
+    }
+
+    void setRandom(RandomGenerator random) {
+        this.random = random;
+    }
+
     /**
      * Generates seed slots based on the specified number (6, 7, 8, 9, or 10)
      * @param numSlots Number of seed slots (must be 6, 7, 8, 9, or 10)
-     * @return List of plant names for the seed slots
+     * @return Read-only list of plant names for the seed slots, in the order they were drawn
      */
     public List<String> generateSeedSlots(int numSlots) {
+        return generateSeedSlots(numSlots, NO_CONSTRAINTS);
+    }
+
+    /**
+     * Generates seed slots that satisfy the given constraints
+     * @param numSlots Number of seed slots (must be 6, 7, 8, 9, or 10)
+     * @param constraints Constraints every pick is checked against
+     * @return Read-only list of plant names for the seed slots, in the order they were drawn
+     * @throws IllegalStateException if the constraints cannot be satisfied
+     */
+    public List<String> generateSeedSlots(int numSlots, SeedSlotConstraint... constraints) {
+        validateSlotCount(numSlots);
+        sampler.sample(random, numSlots, constraints);
+
+        byte[] plants = new byte[numSlots];
+        for (int i = 0; i < numSlots; i++) {
+            plants[i] = (byte) sampler.getSelected(i);
+        }
+        return new PlantListView(plants);
+    }
+
+    /**
+     * Picks random plants for the seed slots and returns them as a bitmask over the
+     * plant list. Draws the same plants as generateSeedSlots for the same random state
+     * @param numSlots Number of seed slots (must be 6, 7, 8, 9, or 10)
+     * @return Bitmask where bit i is set if PLANT_LIST[i] was picked
+     */
+    public long nextSeedSlotMask(int numSlots) {
+        return nextSeedSlotMask(numSlots, NO_CONSTRAINTS);
+    }
+
+    /**
+     * Picks random plants that satisfy the given constraints, as a bitmask over the plant list
+     * @param numSlots Number of seed slots (must be 6, 7, 8, 9, or 10)
+     * @param constraints Constraints every pick is checked against
+     * @return Bitmask where bit i is set if PLANT_LIST[i] was picked
+     * @throws IllegalStateException if the constraints cannot be satisfied
+     */
+    public long nextSeedSlotMask(int numSlots, SeedSlotConstraint... constraints) {
+        validateSlotCount(numSlots);
+        return sampler.sample(random, numSlots, constraints);
+    }
+
+    /**
+     * Gets the sampler used for the last draw, e.g. to read its rejection counts
+     */
+    SeedSlotSampler getSampler() {
+        return sampler;
+    }
+
+    private static void validateSlotCount(int numSlots) {
         // Validate the number of slots
         if (numSlots < 6 || numSlots > 10) {
             throw new IllegalArgumentException("Number of seed slots must be between 6 and 10");
         }
-        
-        List<String> selectedPlants = new ArrayList<>();
-        List<String> availablePlants = new ArrayList<>();
-        
-        // Create a copy of the plant list to avoid duplicates
-        for (String plant : PLANT_LIST) {
-            availablePlants.add(plant);
-        }
-        
-        // Randomly select plants for the seed slots
-        for (int i = 0; i < numSlots; i++) {
-            if (availablePlants.isEmpty()) {
-                // If we run out of unique plants, start over with the full list
-                for (String plant : PLANT_LIST) {
-                    availablePlants.add(plant);
-                }
+    }
+
+    /**
+     * Gets the name of a plant by its index in the plant list
+     * @param index Plant index
+     * @return Plant name
+     */
+    public static String getPlantName(int index) {
+        return PLANT_LIST[index];
+    }
+
+    /**
+     * Gets the index of a plant in the plant list
+     * @param plantName Plant name
+     * @return Plant index, or -1 if the name is not a known plant
+     */
+    public static int getPlantIndex(String plantName) {
+        for (int i = 0; i < PLANT_LIST.length; i++) {
+            if (PLANT_LIST[i].equals(plantName)) {
+                return i;
             }
-            
-            int randomIndex = random.nextInt(availablePlants.size());
-            String selectedPlant = availablePlants.remove(randomIndex);
-            selectedPlants.add(selectedPlant);
         }
-        
-        return selectedPlants;
+        return -1;
     }
-    
+
+    /**
+     * Gets the total number of plants in the plant list
+     * @return Number of plants
+     */
+    public static int getPlantCount() {
+        return PLANT_LIST.length;
+    }
+
     public List<String> getAllPlants() {
         List<String> allPlants = new ArrayList<>();
         for (String plant : PLANT_LIST) {
@@ -70,6 +150,27 @@ public class SeedSlotGenerator {
         return allPlants;
     }
     
+    /**
+     * Read-only list of plant names backed by plant indices into the static plant table
+     */
+    private static class PlantListView extends AbstractList<String> {
+        private final byte[] plants;
+
+        PlantListView(byte[] plants) {
+            this.plants = plants;
+        }
+
+        @Override
+        public String get(int index) {
+            return PLANT_LIST[plants[index]];
+        }
+
+        @Override
+        public int size() {
+            return plants.length;
+        }
+    }
+
     public static void main(String[] args) {
         SeedSlotGenerator generator = new SeedSlotGenerator();
         
@@ -84,5 +185,10 @@ public class SeedSlotGenerator {
             }
             System.out.println();
         }
+
+        System.out.println("Generated 8 seed slots with a sun producer and no Imitater:");
+        List<String> constrained = generator.generateSeedSlots(8,
+            SeedSlotConstraint.requireSunProducer(), SeedSlotConstraint.exclude("Imitater"));
+        System.out.println(String.join(", ", constrained));
     }
 }
\ No newline at end of file
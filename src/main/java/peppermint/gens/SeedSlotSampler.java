@@ -0,0 +1,239 @@
+package peppermint.gens;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws seed slots with a partial Fisher-Yates shuffle over a reusable permutation
+ * of plant indices. Each pick swaps a random remaining plant into the next slot, so
+ * a draw costs O(slots) and never copies the plant list.
+ *
+ * Constraints are checked per pick. A rejected plant is swapped behind the live
+ * range for the current slot only, so the remaining candidates stay uniformly
+ * distributed and the draw does not have to restart. Plants a constraint always
+ * excludes are filtered out of the permutation before the draw starts.
+ *
+ * A sampler is not thread-safe; give every worker its own instance.
+ */
+public class SeedSlotSampler {
+    private static final SeedSlotConstraint[] NO_CONSTRAINTS = new SeedSlotConstraint[0];
+
+    private final int[] identity;
+    private final int[] permutation;
+    private final long allPlants;
+    private int selectedCount;
+    private int candidatesDrawn;
+    private int[] rejectedBy = new int[0];
+
+    /**
+     * Creates a sampler over the full plant list
+     */
+    public SeedSlotSampler() {
+        this(SeedSlotGenerator.getPlantCount());
+    }
+
+    SeedSlotSampler(int plantCount) {
+        if (plantCount > 64) {
+            throw new IllegalArgumentException("Plant masks are limited to 64 plants");
+        }
+        this.identity = new int[plantCount];
+        for (int i = 0; i < plantCount; i++) {
+            identity[i] = i;
+        }
+        this.permutation = new int[plantCount];
+        this.allPlants = plantCount == 64 ? -1L : (1L << plantCount) - 1;
+    }
+
+    /**
+     * Draws distinct plants without constraints
+     * @param random Random source
+     * @param numSlots Number of plants to draw
+     * @return Bitmask over the plant list of the drawn plants
+     */
+    public long sample(RandomGenerator random, int numSlots) {
+        return sample(random, numSlots, NO_CONSTRAINTS);
+    }
+
+    /**
+     * Draws distinct plants that satisfy every constraint. The permutation is reset
+     * before each draw, so the result only depends on the random source
+     * @param random Random source
+     * @param numSlots Number of plants to draw
+     * @param constraints Constraints every pick is checked against
+     * @return Bitmask over the plant list of the drawn plants
+     * @throws IllegalStateException if no remaining plant can fill a slot
+     */
+    public long sample(RandomGenerator random, int numSlots, SeedSlotConstraint... constraints) {
+        if (numSlots < 0 || numSlots > permutation.length) {
+            throw new IllegalArgumentException("Cannot draw " + numSlots + " of " + permutation.length + " plants");
+        }
+
+        long excluded = 0L;
+        for (SeedSlotConstraint constraint : constraints) {
+            excluded |= constraint.excludedPlants();
+        }
+        int poolSize = resetPermutation(excluded);
+
+        if (rejectedBy.length < constraints.length) {
+            rejectedBy = new int[constraints.length];
+        }
+        for (int i = 0; i < constraints.length; i++) {
+            rejectedBy[i] = Long.bitCount(constraints[i].excludedPlants() & allPlants);
+        }
+        candidatesDrawn = permutation.length - poolSize;
+        selectedCount = 0;
+        long chosen = 0L;
+
+        for (int slot = 0; slot < numSlots; slot++) {
+            long restrictTo = forcedCandidates(constraints, chosen, numSlots - slot);
+            int limit = poolSize;
+
+            while (true) {
+                if (limit <= slot) {
+                    throw new IllegalStateException("No plant satisfies the seed slot constraints for slot " + (slot + 1));
+                }
+
+                int pick = slot + random.nextInt(limit - slot);
+                int plant = permutation[pick];
+                candidatesDrawn++;
+
+                if (isAllowed(plant, chosen, restrictTo, constraints)) {
+                    permutation[pick] = permutation[slot];
+                    permutation[slot] = plant;
+                    chosen |= 1L << plant;
+                    break;
+                }
+
+                // Set the rejected plant aside for this slot only
+                limit--;
+                permutation[pick] = permutation[limit];
+                permutation[limit] = plant;
+            }
+            selectedCount++;
+        }
+
+        return chosen;
+    }
+
+    /**
+     * Gets a plant from the last draw, in the order it was drawn
+     * @param slot Slot position
+     * @return Plant index
+     */
+    public int getSelected(int slot) {
+        if (slot < 0 || slot >= selectedCount) {
+            throw new IndexOutOfBoundsException("Slot: " + slot + ", Size: " + selectedCount);
+        }
+        return permutation[slot];
+    }
+
+    /**
+     * Gets the order of the last draw relative to its bitmask: 4 bits per slot,
+     * slot 0 in the lowest bits, each holding the rank within the mask of the plant
+     * drawn for that slot. Fits up to 16 slots
+     * @return Packed draw order, see CompactPreset
+     */
+    public long getDrawOrder() {
+        long chosen = 0L;
+        for (int slot = 0; slot < selectedCount; slot++) {
+            chosen |= 1L << permutation[slot];
+        }
+        long order = 0L;
+        for (int slot = 0; slot < selectedCount; slot++) {
+            long rank = Long.bitCount(chosen & ((1L << permutation[slot]) - 1));
+            order |= rank << (4 * slot);
+        }
+        return order;
+    }
+
+    /**
+     * Gets the number of plants picked by the last draw
+     * @return Number of selected plants
+     */
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+
+    /**
+     * Gets the number of candidates the last draw considered, counting plants
+     * filtered out before the draw once
+     * @return Number of candidates
+     */
+    public int getCandidatesDrawn() {
+        return candidatesDrawn;
+    }
+
+    /**
+     * Gets the number of candidates a constraint rejected in the last draw, including
+     * plants it filtered out before the draw and picks it ruled out while its
+     * requirement was forcing the remaining slots
+     * @param constraintIndex Index of the constraint in the array passed to sample
+     * @return Number of rejected candidates
+     */
+    public int getRejectedBy(int constraintIndex) {
+        return rejectedBy[constraintIndex];
+    }
+
+    /**
+     * Resets the permutation with the excluded plants moved behind the pool
+     * @return Number of plants that may be drawn
+     */
+    private int resetPermutation(long excluded) {
+        if (excluded == 0) {
+            System.arraycopy(identity, 0, permutation, 0, identity.length);
+            return permutation.length;
+        }
+
+        int poolSize = 0;
+        int tail = permutation.length;
+        for (int plant : identity) {
+            if ((excluded & (1L << plant)) == 0) {
+                permutation[poolSize++] = plant;
+            } else {
+                permutation[--tail] = plant;
+            }
+        }
+        return poolSize;
+    }
+
+    /**
+     * Checks a candidate against the forced candidate set and every constraint,
+     * crediting a rejection to the constraint responsible for it
+     */
+    private boolean isAllowed(int plant, long chosen, long restrictTo, SeedSlotConstraint[] constraints) {
+        long bit = 1L << plant;
+        if (restrictTo != 0 && (restrictTo & bit) == 0) {
+            for (int i = 0; i < constraints.length; i++) {
+                long required = constraints[i].requiredAnyOf();
+                if (required != 0 && (required & chosen) == 0) {
+                    rejectedBy[i]++;
+                }
+            }
+            return false;
+        }
+        for (int i = 0; i < constraints.length; i++) {
+            if (!constraints[i].allows(plant, chosen)) {
+                rejectedBy[i]++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Once the open requirements fill every free slot, only plants satisfying one of
+     * them may be drawn
+     * @return Bitmask of allowed plants, or 0 if any plant may be drawn
+     */
+    private static long forcedCandidates(SeedSlotConstraint[] constraints, long chosen, int freeSlots) {
+        long open = 0L;
+        int openCount = 0;
+        for (SeedSlotConstraint constraint : constraints) {
+            long required = constraint.requiredAnyOf();
+            if (required != 0 && (required & chosen) == 0) {
+                open |= required;
+                openCount++;
+            }
+        }
+        return openCount >= freeSlots ? open : 0L;
+    }
+}
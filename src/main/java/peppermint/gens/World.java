@@ -0,0 +1,92 @@
+package peppermint.gens;
+
+/**
+ * The five adventure worlds levels are drawn from.
+ */
+public enum World {
+    DAY(1, "Day"),
+    NIGHT(2, "Night"),
+    POOL(3, "Pool"),
+    FOG(4, "Fog"),
+    ROOF(5, "Roof");
+
+    private static final World[] BY_NUMBER = { null, DAY, NIGHT, POOL, FOG, ROOF };
+
+    private final int number;
+    private final String displayName;
+
+    World(int number, String displayName) {
+        this.number = number;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Gets the world number as shown in level names (1-5)
+     * @return World number
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Gets the levels of this world as a bitmask over level codes
+     * @return Mask with bit (world * 10 + level) set for levels 1-10
+     */
+    public long getLevelMask() {
+        return 0x3FFL << (number * 10 + 1);
+    }
+
+    /**
+     * Whether Water Ski patterns can be generated for levels in this world
+     * @return true for Pool levels
+     */
+    public boolean hasWaterSkiPatterns() {
+        return this == POOL;
+    }
+
+    /**
+     * Gets a world by its number
+     * @param number World number (1-5)
+     * @return The world
+     */
+    public static World fromNumber(int number) {
+        if (number < 1 || number > 5) {
+            throw new IllegalArgumentException("Invalid world number: " + number);
+        }
+        return BY_NUMBER[number];
+    }
+
+    /**
+     * Gets the world of a level code
+     * @param levelCode Level code (world * 10 + level)
+     * @return The world
+     */
+    public static World fromLevelCode(int levelCode) {
+        return fromNumber(LevelGenerator.getWorldOf(levelCode));
+    }
+
+    /**
+     * Gets the world of a level display name such as "3-4 (Pool)"
+     * @param levelName Level display name
+     * @return The world
+     */
+    public static World fromLevelName(String levelName) {
+        // Level names start with their world number, so no substring search is needed
+        if (!levelName.isEmpty()) {
+            int number = levelName.charAt(0) - '0';
+            if (number >= 1 && number <= 5) {
+                return BY_NUMBER[number];
+            }
+        }
+        for (World world : values()) {
+            if (levelName.contains("(" + world.displayName + ")")) {
+                return world;
+            }
+        }
+        throw new IllegalArgumentException("Unknown level: " + levelName);
+    }
+}
@@ -0,0 +1,245 @@
+package peppermint.themes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-addressed cache of parsed theme packages. Parsed models are stored under
+ * the SHA-256 of the .pmt they came from, and an index remembers the size,
+ * modification time and hash of every package seen. While a package's size and
+ * modification time are unchanged, its model is served from the cache without
+ * hashing, decompressing or writing anything. A package that changed is hashed,
+ * and only parsed again if its content has not been seen before.
+ *
+ * Cached models only hold what the package files say. A theme whose theme.toml
+ * has no name is named after its package file when it is read from the cache, so
+ * identical packages under different file names each keep their own name.
+ */
+public class ThemeCache {
+    private static final String INDEX_FILE = "index.properties";
+    private static final String MODEL_SUFFIX = ".model";
+
+    /**
+     * Parses a theme package on a cache miss
+     */
+    @FunctionalInterface
+    public interface PackageParser {
+        ThemeModel parse(Path packagePath) throws IOException;
+    }
+
+    private final Path cacheDir;
+    private final Map<String, ThemeModel> models = new ConcurrentHashMap<>();
+    private Properties index;
+    private boolean indexChanged;
+
+    /**
+     * Creates a cache stored in the given directory. Nothing is read or written
+     * until the cache is first used
+     * @param cacheDir Directory holding the index and the cached models
+     */
+    public ThemeCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Gets the parsed model of a theme package, parsing the package only if its
+     * content has not been cached yet
+     * @param packagePath Path to the .pmt file
+     * @param parser Parser used on a cache miss
+     * @return The theme model
+     * @throws IOException if the package cannot be read or parsed
+     */
+    public synchronized ThemeModel get(Path packagePath, PackageParser parser) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(packagePath, BasicFileAttributes.class);
+        String key = packagePath.getFileName().toString();
+        String stamp = attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+
+        String themeName = themeName(packagePath);
+        String entry = getIndex().getProperty(key);
+        if (entry != null && entry.startsWith(stamp + ":")) {
+            ThemeModel model = loadModel(entry.substring(stamp.length() + 1), themeName);
+            if (model != null) {
+                return model;
+            }
+        }
+
+        String hash = sha256(packagePath);
+        ThemeModel model = loadModel(hash, themeName);
+        if (model == null) {
+            model = parser.parse(packagePath);
+            storeModel(hash, model);
+        }
+
+        index.setProperty(key, stamp + ":" + hash);
+        indexChanged = true;
+        saveIndex();
+        return model;
+    }
+
+    /**
+     * Caches a model that was parsed elsewhere, e.g. while a package was validated
+     * on install, so later lookups neither decompress nor hash the package. The
+     * index file is only written by saveIndex(), so a batch of packages costs one write
+     * @param packagePath Path to the .pmt file, at its final location
+     * @param model The package's parsed model
+     * @return SHA-256 of the package
+     * @throws IOException if the package or the cache cannot be accessed
+     */
+    public String put(Path packagePath, ThemeModel model) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(packagePath, BasicFileAttributes.class);
+        String stamp = attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        // Hashed outside of the lock, so several installer threads can do this at once
+        String hash = sha256(packagePath);
+        if (loadModel(hash, themeName(packagePath)) == null) {
+            storeModel(hash, model);
+        }
+
+        synchronized (this) {
+            getIndex().setProperty(packagePath.getFileName().toString(), stamp + ":" + hash);
+            indexChanged = true;
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the index if it changed since it was last written
+     */
+    public synchronized void saveIndex() throws IOException {
+        if (indexChanged) {
+            writeAtomically(cacheDir.resolve(INDEX_FILE), index);
+            indexChanged = false;
+        }
+    }
+
+    /**
+     * Forgets the index entry of a package, e.g. after it was removed. The cached
+     * model stays available should the same content be installed again
+     * @param packagePath Path to the .pmt file
+     */
+    public synchronized void invalidate(Path packagePath) throws IOException {
+        if (getIndex().remove(packagePath.getFileName().toString()) != null) {
+            indexChanged = true;
+            saveIndex();
+        }
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    private Properties getIndex() throws IOException {
+        if (index == null) {
+            index = readProperties(cacheDir.resolve(INDEX_FILE));
+            if (index == null) {
+                index = new Properties();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Loads a cached model, named after the given theme if theme.toml has no name
+     */
+    private ThemeModel loadModel(String hash, String themeName) throws IOException {
+        ThemeModel model = models.get(hash);
+        if (model == null) {
+            Properties properties = readProperties(cacheDir.resolve(hash + MODEL_SUFFIX));
+            model = properties != null ? ThemeModel.fromProperties(properties, themeName) : null;
+            if (model != null) {
+                models.put(hash, model);
+            }
+        }
+        return model != null ? model.withThemeName(themeName) : null;
+    }
+
+    /**
+     * Gets the theme name of a package, i.e. its file name without .pmt
+     */
+    private static String themeName(Path packagePath) {
+        String fileName = packagePath.getFileName().toString();
+        return fileName.endsWith(".pmt") ? fileName.substring(0, fileName.length() - 4) : fileName;
+    }
+
+    private void storeModel(String hash, ThemeModel model) throws IOException {
+        writeAtomically(cacheDir.resolve(hash + MODEL_SUFFIX), model.toProperties());
+        models.put(hash, model);
+    }
+
+    static Properties readProperties(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes to a temporary file first so a crash never leaves a truncated cache file
+     */
+    static void writeAtomically(Path target, Properties properties) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Hashes the content of the given files, in order. Missing files are skipped
+     * @return Hex-encoded SHA-256
+     */
+    static String sha256(Path... files) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            } catch (NoSuchFileException e) {
+                // Optional file, e.g. a theme directory without mani.toml
+            }
+        }
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
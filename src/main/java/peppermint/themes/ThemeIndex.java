@@ -0,0 +1,498 @@
+package peppermint.themes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent index of the installed themes. Each theme package (.pmt) and theme
+ * directory is parsed once; the index stores its name, type, mode, author and
+ * checksum together with the file size and modification time, and reuses the entry
+ * until those change. After start(), a WatchService keeps the index current, so
+ * listing themes never rescans or parses the themes directory.
+ */
+public class ThemeIndex implements Closeable {
+    private static final String INDEX_FILE = "themes.properties";
+    private static final String EXAMPLE_THEME = "example-theme";
+
+    // Events arriving within this time are handled together, e.g. while a large package is copied
+    private static final long SETTLE_MILLIS = 200;
+
+    /**
+     * Whether a theme is packaged or unpacked
+     */
+    public enum Type {
+        PACKAGE, DIRECTORY
+    }
+
+    /**
+     * Notified on the watcher thread whenever themes are added, changed or removed
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void themesChanged(List<Entry> entries);
+    }
+
+    /**
+     * An indexed theme
+     */
+    public static final class Entry {
+        private final String fileName;
+        private final Type type;
+        private final String stamp;
+        private final String displayName;
+        private final boolean dark;
+        private final String author;
+        private final String checksum;
+
+        Entry(String fileName, Type type, String stamp, String displayName, boolean dark, String author, String checksum) {
+            this.fileName = fileName;
+            this.type = type;
+            this.stamp = stamp;
+            this.displayName = displayName;
+            this.dark = dark;
+            this.author = author;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Gets the theme name used to select the theme, i.e. the file name without .pmt
+         * @return Theme name
+         */
+        public String getName() {
+            return type == Type.PACKAGE ? fileName.substring(0, fileName.length() - 4) : fileName;
+        }
+
+        /**
+         * Gets the name from theme.toml
+         * @return Display name
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Gets the mode the theme is applied in
+         * @return "dark" or "light"
+         */
+        public String getMode() {
+            return dark ? "dark" : "light";
+        }
+
+        public boolean isDark() {
+            return dark;
+        }
+
+        /**
+         * Gets the author from mani.toml
+         * @return Author, or null if unknown
+         */
+        public String getAuthor() {
+            return author;
+        }
+
+        /**
+         * Gets the SHA-256 of the package, or of theme.toml and mani.toml for a directory
+         * @return Hex-encoded checksum
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+
+        @Override
+        public String toString() {
+            return getName() + " (" + type.name().toLowerCase() + ", " + getMode()
+                + (author != null ? ", by " + author : "") + ")";
+        }
+    }
+
+    private final Path themesDir;
+    private final Path indexFile;
+    private final ThemeCache.PackageParser packageLoader;
+    private final Map<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    // Entries of packages parsed elsewhere, used when the package is next indexed
+    private final Map<String, Entry> prepared = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread watcherThread;
+    private volatile boolean loaded;
+
+    /**
+     * Creates an index of a themes directory. Nothing is read until the index is first used
+     * @param themesDir Directory holding the theme packages and directories
+     * @param cacheDir Directory the index is persisted in
+     * @param packageLoader Loads the model of a theme package, e.g. through the theme cache
+     */
+    public ThemeIndex(Path themesDir, Path cacheDir, ThemeCache.PackageParser packageLoader) {
+        this.themesDir = themesDir;
+        this.indexFile = cacheDir.resolve(INDEX_FILE);
+        this.packageLoader = packageLoader;
+    }
+
+    /**
+     * Gets the indexed themes, loading the persisted index on first use
+     * @return Snapshot of the entries, sorted by file name
+     */
+    public List<Entry> getEntries() {
+        synchronized (this) {
+            if (!loaded) {
+                refresh();
+            }
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Gets the indexed themes without waiting for a refresh that is in progress, so
+     * it is safe to call on the event dispatch thread. Until the index has been
+     * loaded, the entries persisted by the last run are returned as they are
+     * @return Snapshot of the entries, sorted by file name
+     */
+    public List<Entry> peekEntries() {
+        if (loaded) {
+            return new ArrayList<>(entries.values());
+        }
+        return new ArrayList<>(readPersisted().values());
+    }
+
+    /**
+     * Gets an indexed theme by name
+     * @param name Theme name, i.e. the file name without .pmt
+     * @return The entry, or null if there is no such theme
+     */
+    public Entry getEntry(String name) {
+        for (Entry entry : getEntries()) {
+            if (entry.getName().equals(name)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Provides the model of a package that was already parsed, e.g. by the
+     * installer, so the next refresh indexes it without parsing or hashing it
+     * again. Does not wait for the index lock
+     * @param packagePath Path to the .pmt file in the themes directory
+     * @param model The package's parsed model
+     * @param checksum SHA-256 of the package
+     */
+    public void prepare(Path packagePath, ThemeModel model, String checksum) throws IOException {
+        String fileName = packagePath.getFileName().toString();
+        prepared.put(fileName, new Entry(fileName, Type.PACKAGE, stamp(packagePath), model.getName(),
+                                         model.isDark(), model.getAuthor(), checksum));
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reconciles the index with the themes directory. Only themes whose size or
+     * modification time changed are parsed again
+     */
+    public synchronized void refresh() {
+        if (!loaded) {
+            loadPersisted();
+            loaded = true;
+        }
+
+        Set<String> present = new HashSet<>();
+        try {
+            Files.createDirectories(themesDir);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(themesDir)) {
+                for (Path path : stream) {
+                    present.add(path.getFileName().toString());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        Set<String> names = new HashSet<>(present);
+        names.addAll(entries.keySet());
+        update(names);
+    }
+
+    /**
+     * Starts watching the themes directory. Changes are indexed on a background
+     * thread and reported to the listeners
+     */
+    public synchronized void start() throws IOException {
+        if (watcherThread != null) {
+            return;
+        }
+        if (!loaded) {
+            refresh();
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        register(themesDir);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(themesDir, Files::isDirectory)) {
+            for (Path dir : stream) {
+                registerThemeDir(dir);
+            }
+        }
+
+        watcherThread = new Thread(this::watch, "PepperMint theme watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Stops watching the themes directory
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+            watcherThread = null;
+            watchedDirs.clear();
+        }
+    }
+
+    private void watch() {
+        WatchService service = watchService;
+        try {
+            while (true) {
+                Set<String> changed = new HashSet<>();
+                boolean overflow = collect(service.take(), changed);
+
+                // Let bursts of events settle before indexing
+                WatchKey key;
+                while ((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(key, changed);
+                }
+
+                if (overflow) {
+                    refresh();
+                } else {
+                    synchronized (this) {
+                        update(changed);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watching stopped
+        }
+    }
+
+    /**
+     * Collects the names of themes affected by a key's events
+     * @return true if events were lost and the directory must be rescanned
+     */
+    private boolean collect(WatchKey key, Set<String> changed) {
+        Path dir = watchedDirs.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (dir != null && dir.equals(themesDir)) {
+                Path path = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                    // Watch new directories right away, their theme.toml is usually written afterwards
+                    registerThemeDir(path);
+                }
+                changed.add(path.getFileName().toString());
+            } else if (dir != null) {
+                // A file inside a theme directory changed
+                changed.add(dir.getFileName().toString());
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+        return overflow;
+    }
+
+    /**
+     * Re-indexes the given file names and notifies the listeners if anything changed.
+     * Callers hold the lock
+     */
+    private void update(Set<String> fileNames) {
+        boolean changed = false;
+        for (String fileName : fileNames) {
+            Entry previous = entries.get(fileName);
+            Entry current = index(fileName, previous);
+            if (current == previous) {
+                continue;
+            }
+            if (current != null) {
+                entries.put(fileName, current);
+            } else {
+                entries.remove(fileName);
+            }
+            changed = true;
+        }
+
+        if (changed) {
+            persist();
+            List<Entry> snapshot = new ArrayList<>(entries.values());
+            for (Listener listener : listeners) {
+                listener.themesChanged(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Indexes a single theme
+     * @param previous The current entry, returned as is if the theme did not change
+     * @return The entry, or null if the file is not a readable theme
+     */
+    private Entry index(String fileName, Entry previous) {
+        if (fileName.startsWith(".") || fileName.equals(EXAMPLE_THEME)) {
+            return null;
+        }
+
+        Path path = themesDir.resolve(fileName);
+        try {
+            if (fileName.endsWith(".pmt") && Files.isRegularFile(path)) {
+                String stamp = stamp(path);
+                if (previous != null && previous.stamp.equals(stamp)) {
+                    return previous;
+                }
+                Entry ready = prepared.remove(fileName);
+                if (ready != null && ready.stamp.equals(stamp)) {
+                    return ready;
+                }
+                ThemeModel model = packageLoader.parse(path);
+                return new Entry(fileName, Type.PACKAGE, stamp, model.getName(), model.isDark(),
+                                 model.getAuthor(), ThemeCache.sha256(path));
+            }
+
+            Path themeToml = path.resolve(ThemePackage.THEME_TOML);
+            if (Files.isDirectory(path) && Files.isRegularFile(themeToml)) {
+                Path manifestToml = path.resolve(ThemePackage.MANIFEST_TOML);
+                String stamp = stamp(themeToml) + "/" + stamp(manifestToml);
+                if (previous != null && previous.stamp.equals(stamp)) {
+                    return previous;
+                }
+                ThemeModel model = ThemeManager.parseThemeToml(themeToml);
+                return new Entry(fileName, Type.DIRECTORY, stamp, model.getName(), model.isDark(),
+                                 model.getAuthor(), ThemeCache.sha256(themeToml, manifestToml));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Unreadable, being written or invalid; indexed again on its next change
+            System.out.println("Warning: Could not index theme '" + fileName + "': " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static String stamp(Path file) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        } catch (NoSuchFileException e) {
+            return "-";
+        }
+    }
+
+    private void registerThemeDir(Path dir) {
+        if (!dir.getFileName().toString().startsWith(".")) {
+            register(dir);
+        }
+    }
+
+    private void register(Path dir) {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirs.put(key, dir);
+        } catch (IOException e) {
+            System.out.println("Warning: Could not watch " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private void loadPersisted() {
+        entries.putAll(readPersisted());
+    }
+
+    /**
+     * Reads the persisted index, leaving out incomplete entries
+     * @return Entries by file name, sorted
+     */
+    private Map<String, Entry> readPersisted() {
+        Map<String, Entry> persisted = new TreeMap<>();
+        try {
+            Properties properties = ThemeCache.readProperties(indexFile);
+            if (properties == null) {
+                return persisted;
+            }
+            for (String fileName : properties.stringPropertyNames()) {
+                if (!fileName.endsWith(".type")) {
+                    continue;
+                }
+                fileName = fileName.substring(0, fileName.length() - 5);
+                try {
+                    persisted.put(fileName, new Entry(fileName,
+                        Type.valueOf(properties.getProperty(fileName + ".type")),
+                        properties.getProperty(fileName + ".stamp"),
+                        properties.getProperty(fileName + ".name"),
+                        Boolean.parseBoolean(properties.getProperty(fileName + ".dark")),
+                        properties.getProperty(fileName + ".author"),
+                        properties.getProperty(fileName + ".checksum")));
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    // Incomplete entry, the theme is indexed again
+                }
+            }
+            persisted.values().removeIf(entry -> entry.stamp == null || entry.displayName == null || entry.checksum == null);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return persisted;
+    }
+
+    private void persist() {
+        Properties properties = new Properties();
+        for (Entry entry : entries.values()) {
+            properties.setProperty(entry.fileName + ".type", entry.type.name());
+            properties.setProperty(entry.fileName + ".stamp", entry.stamp);
+            properties.setProperty(entry.fileName + ".name", entry.displayName);
+            properties.setProperty(entry.fileName + ".dark", Boolean.toString(entry.dark));
+            properties.setProperty(entry.fileName + ".checksum", entry.checksum);
+            if (entry.author != null) {
+                properties.setProperty(entry.fileName + ".author", entry.author);
+            }
+        }
+        try {
+            ThemeCache.writeAtomically(indexFile, properties);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
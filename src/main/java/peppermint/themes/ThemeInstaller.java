@@ -0,0 +1,255 @@
+package peppermint.themes;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Installs theme packages into the themes directory on a bounded pool of worker
+ * threads. Every package is decompressed and validated before it is copied, and
+ * becomes visible under its final name only once it is complete. The model parsed
+ * while validating goes to the theme cache and index, so the refresh after the
+ * batch finds every package already parsed and writes the indexes once.
+ */
+public class ThemeInstaller {
+    private static final int MAX_WORKERS = 4;
+
+    /**
+     * Outcome of installing a single package
+     */
+    public enum Status {
+        INSTALLED, FAILED, CANCELLED
+    }
+
+    /**
+     * Result of installing a single package
+     */
+    public static final class Result {
+        private final Path source;
+        private final Status status;
+        private final String message;
+
+        Result(Path source, Status status, String message) {
+            this.source = source;
+            this.status = status;
+            this.message = message;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Gets the installed theme's name, or the reason it was not installed
+         * @return Message describing the result
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return source.getFileName() + ": " + message;
+        }
+    }
+
+    /**
+     * Notified on a worker thread after each package
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void packageDone(Result result, int done, int total);
+    }
+
+    /**
+     * A running batch of installs
+     */
+    public static final class Installation {
+        private final int total;
+        private final AtomicInteger done = new AtomicInteger();
+        private volatile boolean cancelled;
+        private CompletableFuture<List<Result>> results;
+
+        private Installation(int total) {
+            this.total = total;
+        }
+
+        /**
+         * Cancels the packages that are not installed yet. Packages already being
+         * copied are finished or cleaned up, never left half-written
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getDone() {
+            return done.get();
+        }
+
+        /**
+         * Gets the results, completed once every package was handled and the index refreshed
+         * @return Future of the per-package results, in the order the packages were given
+         */
+        public CompletableFuture<List<Result>> getResults() {
+            return results;
+        }
+    }
+
+    private final Path themesDir;
+    private final ThemeIndex themeIndex;
+    private final ThemeCache themeCache;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates an installer for a themes directory
+     * @param themesDir Directory the packages are installed to
+     * @param themeIndex Index refreshed after each batch, or null
+     * @param themeCache Cache receiving the models of installed packages, or null
+     */
+    public ThemeInstaller(Path themesDir, ThemeIndex themeIndex, ThemeCache themeCache) {
+        this.themesDir = themesDir;
+        this.themeIndex = themeIndex;
+        this.themeCache = themeCache;
+
+        int workers = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "PepperMint theme installer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Idle workers exit, so the installer costs nothing between batches
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Installs theme packages in the background
+     * @param packages .pmt files to install
+     * @param listener Notified after each package, or null
+     * @return Handle to follow or cancel the installation
+     */
+    public Installation install(List<Path> packages, ProgressListener listener) {
+        Installation installation = new Installation(packages.size());
+        List<CompletableFuture<Result>> futures = new ArrayList<>(packages.size());
+        for (Path source : packages) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                Result result = install(source, installation);
+                int done = installation.done.incrementAndGet();
+                if (listener != null) {
+                    listener.packageDone(result, done, installation.total);
+                }
+                return result;
+            }, executor));
+        }
+
+        installation.results = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            if (themeCache != null) {
+                try {
+                    themeCache.saveIndex();
+                } catch (IOException e) {
+                    System.out.println("Warning: Could not save the theme cache index: " + e.getMessage());
+                }
+            }
+            if (themeIndex != null) {
+                themeIndex.refresh();
+            }
+            List<Result> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<Result> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+        return installation;
+    }
+
+    private Result install(Path source, Installation installation) {
+        if (installation.isCancelled()) {
+            return new Result(source, Status.CANCELLED, "Cancelled");
+        }
+
+        String fileName = source.getFileName().toString();
+        if (!fileName.toLowerCase().endsWith(".pmt")) {
+            return new Result(source, Status.FAILED, "Not a theme package (.pmt)");
+        }
+        String themeName = fileName.substring(0, fileName.length() - 4);
+        Path target = themesDir.resolve(themeName + ".pmt");
+
+        Path temp = null;
+        try {
+            if (Files.exists(target)) {
+                return new Result(source, Status.FAILED, "A theme named '" + themeName + "' is already installed");
+            }
+
+            // Decompress and validate before anything is written
+            ThemeModel model = ThemePackage.read(source).toModel(themeName);
+            if (installation.isCancelled()) {
+                return new Result(source, Status.CANCELLED, "Cancelled");
+            }
+
+            // Copy under a hidden name the theme index ignores, then move into place
+            Files.createDirectories(themesDir);
+            temp = Files.createTempFile(themesDir, ".install-", ".tmp");
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (installation.isCancelled()) {
+                return new Result(source, Status.CANCELLED, "Cancelled");
+            }
+            Files.move(temp, target);
+            temp = null;
+            remember(target, model);
+            return new Result(source, Status.INSTALLED, "Installed '" + model.getName() + "'");
+        } catch (FileAlreadyExistsException e) {
+            return new Result(source, Status.FAILED, "A theme named '" + themeName + "' is already installed");
+        } catch (IOException | RuntimeException e) {
+            return new Result(source, Status.FAILED, e.getMessage() != null ? e.getMessage()
+                : "Invalid theme package (" + e.getClass().getSimpleName() + ")");
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // Leftover hidden temp file, ignored by the index
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands the model parsed while validating to the cache and the index, so the
+     * installed package is not decompressed again. The package is installed even if
+     * this fails; it is then parsed on the next refresh
+     */
+    private void remember(Path target, ThemeModel model) {
+        if (themeCache == null) {
+            return;
+        }
+        try {
+            String checksum = themeCache.put(target, model);
+            if (themeIndex != null) {
+                themeIndex.prepare(target, model, checksum);
+            }
+        } catch (IOException e) {
+            System.out.println("Warning: Could not cache theme '" + target.getFileName() + "': " + e.getMessage());
+        }
+    }
+}
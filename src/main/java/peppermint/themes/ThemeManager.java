@@ -1,110 +1,58 @@
 package peppermint.themes;
 
+import peppermint.AppContext;
 import peppermint.config.ConfigManager;
+import peppermint.archive.ArchiveReader;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.*;
 import java.nio.file.*;
-
-// Import for XZ decompression and embedded resources
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import java.util.concurrent.CompletableFuture;
 
 public class ThemeManager {
     private static final String DEFAULT_THEME = "default";
     private static final String DEFAULT_THEME_MODE = "light";
+    // Name in the example theme template, replaced by the name of each new theme
+    private static final String TEMPLATE_THEME_NAME = "Gameboy Green (Dark)";
 
-    private String currentTheme;
-    private String currentThemeMode;
+    // Mirrors of the config values, kept current by a config listener
+    private volatile String currentTheme;
+    private volatile String currentThemeMode;
     private ConfigManager configManager;
-
-    public ThemeManager() {
-        this.configManager = new ConfigManager();
-        this.currentTheme = configManager.getCurrentTheme();
-        this.currentThemeMode = configManager.getCurrentThemeMode();
-
-        // Ensure that the example theme exists in the themes directory
-        ensureExampleThemeExists();
-    }
-
-    /**
-     * Ensures the example theme exists in the themes directory
-     */
-    private void ensureExampleThemeExists() {
-        Path themesDir = Paths.get("PepperMintThemes");
-        Path exampleThemeDir = themesDir.resolve("example-theme");
-
-        try {
-            // Create themes directory if it doesn't exist
-            Files.createDirectories(themesDir);
-
-            // If the example theme doesn't exist, extract it from embedded resources
-            if (!Files.exists(exampleThemeDir)) {
-                System.out.println("Extracting example theme from embedded resources...");
-                extractEmbeddedExampleTheme();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
+    private final ThemeCache themeCache = new ThemeCache(Paths.get("PepperMintThemes", ".cache"));
+    private final ThemeIndex themeIndex = new ThemeIndex(Paths.get("PepperMintThemes"), themeCache.getCacheDir(), this::loadThemeModel);
+    private final ThemeInstaller themeInstaller = new ThemeInstaller(Paths.get("PepperMintThemes"), themeIndex, themeCache);
 
     /**
-     * Extracts the example theme from embedded resources
+     * Creates a theme manager using the shared configuration. Prefer the shared
+     * instance from AppContext.getThemeManager()
      */
-    private void extractEmbeddedExampleTheme() {
-        try {
-            // Create the example theme directory
-            Path themesDir = Paths.get("PepperMintThemes");
-            Path exampleThemeDir = themesDir.resolve("example-theme");
-            Files.createDirectories(exampleThemeDir);
-
-            // Copy embedded theme files
-            copyEmbeddedResourceToFile("/themedata/theme.toml", exampleThemeDir.resolve("theme.toml"));
-            copyEmbeddedResourceToFile("/themedata/mani.toml", exampleThemeDir.resolve("mani.toml"));
-
-            System.out.println("Example theme extracted successfully!");
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public ThemeManager() {
+        this(AppContext.getConfigManager());
     }
 
     /**
-     * Copies an embedded resource to a file
-     * @param resourcePath Path of the embedded resource
-     * @param targetFile Target file to write to
+     * Creates a theme manager
+     * @param configManager Configuration holding the current theme and theme mode
      */
-    private void copyEmbeddedResourceToFile(String resourcePath, Path targetFile) throws IOException {
-        InputStream inputStream = getClass().getResourceAsStream(resourcePath);
-        if (inputStream == null) {
-            // Try alternative path format
-            inputStream = ThemeManager.class.getClassLoader().getResourceAsStream(resourcePath.replaceFirst("/", ""));
-            if (inputStream == null) {
-                // Fallback: copy from the example-theme directory if it exists
-                System.err.println("Embedded resource not found: " + resourcePath);
-                Path exampleThemePath = Paths.get("example-theme").resolve(targetFile.getFileName().toString());
-                if (Files.exists(exampleThemePath)) {
-                    Files.copy(exampleThemePath, targetFile, StandardCopyOption.REPLACE_EXISTING);
-                    System.out.println("Copied from example-theme directory: " + targetFile.getFileName());
-                    return;
-                } else {
-                    throw new IOException("Embedded resource not found: " + resourcePath);
-                }
-            }
-        }
-
-        try (InputStream finalInputStream = inputStream; OutputStream outputStream = Files.newOutputStream(targetFile)) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = finalInputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+    public ThemeManager(ConfigManager configManager) {
+        this.configManager = configManager;
+        this.currentTheme = configManager.getCurrentTheme();
+        this.currentThemeMode = configManager.getCurrentThemeMode();
+        configManager.addListener((key, oldValue, newValue) -> {
+            if (ConfigManager.THEME.equals(key)) {
+                currentTheme = configManager.getCurrentTheme();
+            } else if (ConfigManager.THEME_MODE.equals(key)) {
+                currentThemeMode = configManager.getCurrentThemeMode();
             }
-        }
+        });
     }
 
     /**
-     * Creates a new theme based on the example theme template
+     * Creates a new theme based on the example theme template. The template is read
+     * from PepperMintThemes/example-theme if there is one, otherwise straight from
+     * the classpath, and the new name is filled in before anything is written
      * @param newThemeName Name of the new theme to create
      * @return true if the theme was created successfully, false otherwise
      */
@@ -124,45 +72,16 @@ public class ThemeManager {
                 return false;
             }
 
-            // Create the new theme directory
-            Files.createDirectories(newThemeDir);
-
-            // Copy example theme files to the new theme directory
-            Path exampleThemeDir = themesDir.resolve("example-theme");
-
-            if (Files.exists(exampleThemeDir)) {
-                // Copy theme.toml and mani.toml from example theme
-                Files.copy(exampleThemeDir.resolve("theme.toml"), newThemeDir.resolve("theme.toml"),
-                          StandardCopyOption.REPLACE_EXISTING);
-                Files.copy(exampleThemeDir.resolve("mani.toml"), newThemeDir.resolve("mani.toml"),
-                          StandardCopyOption.REPLACE_EXISTING);
+            // Read both templates before creating anything, so a missing one leaves no empty theme behind
+            String themeToml = readTemplate(ThemePackage.THEME_TOML).replace(TEMPLATE_THEME_NAME, newThemeName);
+            String manifestToml = readTemplate(ThemePackage.MANIFEST_TOML).replace(TEMPLATE_THEME_NAME, newThemeName);
 
-                // Update the theme.toml file with the new theme name
-                updateThemeConfig(newThemeDir, newThemeName);
+            Files.createDirectories(newThemeDir);
+            Files.writeString(newThemeDir.resolve(ThemePackage.THEME_TOML), themeToml);
+            Files.writeString(newThemeDir.resolve(ThemePackage.MANIFEST_TOML), manifestToml);
 
-                System.out.println("New theme created: " + newThemeName);
-                return true;
-            } else {
-                // If example theme doesn't exist, try to extract from embedded resources
-                System.out.println("Example theme not found, extracting from embedded resources...");
-                extractEmbeddedExampleTheme();
-
-                // Retry copying after extraction
-                if (Files.exists(exampleThemeDir)) {
-                    Files.copy(exampleThemeDir.resolve("theme.toml"), newThemeDir.resolve("theme.toml"),
-                              StandardCopyOption.REPLACE_EXISTING);
-                    Files.copy(exampleThemeDir.resolve("mani.toml"), newThemeDir.resolve("mani.toml"),
-                              StandardCopyOption.REPLACE_EXISTING);
-
-                    updateThemeConfig(newThemeDir, newThemeName);
-
-                    System.out.println("New theme created: " + newThemeName);
-                    return true;
-                } else {
-                    System.err.println("Failed to create new theme: example theme not available");
-                    return false;
-                }
-            }
+            System.out.println("New theme created: " + newThemeName);
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -170,64 +89,96 @@ public class ThemeManager {
     }
 
     /**
-     * Updates the theme.toml and mani.toml files with the new theme name
-     * @param themeDir The directory of the theme to update
-     * @param themeName The new theme name
+     * Reads a file of the example theme template
+     * @param fileName Template file name, e.g. "theme.toml"
+     * @return The template content
+     * @throws IOException if the template is not available anywhere
      */
-    private void updateThemeConfig(Path themeDir, String themeName) throws IOException {
-        // Update theme.toml
-        Path themeTomlPath = themeDir.resolve("theme.toml");
-        String themeTomlContent = Files.readString(themeTomlPath);
-        themeTomlContent = themeTomlContent.replace("Gameboy Green (Dark)", themeName);
-        Files.writeString(themeTomlPath, themeTomlContent);
-
-        // Update mani.toml
-        Path maniTomlPath = themeDir.resolve("mani.toml");
-        String maniTomlContent = Files.readString(maniTomlPath);
-        maniTomlContent = maniTomlContent.replace("Gameboy Green (Dark)", themeName);
-        Files.writeString(maniTomlPath, maniTomlContent);
+    private String readTemplate(String fileName) throws IOException {
+        // An example theme kept in the themes directory overrides the built-in template
+        Path userTemplate = Paths.get("PepperMintThemes", "example-theme", fileName);
+        if (Files.exists(userTemplate)) {
+            return Files.readString(userTemplate);
+        }
+
+        try (InputStream in = ThemeManager.class.getResourceAsStream("/themedata/" + fileName)) {
+            if (in != null) {
+                return new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+            }
+        }
+
+        // Running from the source tree without the resources on the classpath
+        Path sourceTemplate = Paths.get("example-theme", fileName);
+        if (Files.exists(sourceTemplate)) {
+            return Files.readString(sourceTemplate);
+        }
+        throw new IOException("Theme template not found: " + fileName);
     }
 
     /**
-     * Applies the currently selected theme
+     * Resolves and applies the current theme. Must be called on the EDT; use
+     * resolveCurrentThemeAsync() and applyTheme() to keep file access off it
      */
     public void applyCurrentTheme() {
-        try {
-            // First check if it's a custom theme
-            if (!"default".equals(currentTheme) && !"light".equals(currentTheme) && !"dark".equals(currentTheme)) {
-                // Validate that the custom theme exists before trying to load it
-                if (isCustomThemeValid(currentTheme)) {
-                    // Try to load a custom theme from the themes directory
-                    if (loadCustomTheme(currentTheme)) {
-                        return; // Custom theme loaded successfully
-                    }
-                }
+        applyTheme(resolveCurrentTheme());
+    }
+
+    /**
+     * Resolves the current theme on a background thread. The returned future
+     * completes with the fallback theme if resolving fails, never exceptionally
+     * @return Future completed with the theme to pass to applyTheme()
+     */
+    public CompletableFuture<ThemeModel> resolveCurrentThemeAsync() {
+        return CompletableFuture.supplyAsync(this::resolveCurrentTheme, runnable -> {
+            // Not a daemon: at startup it keeps the JVM alive until the EDT takes over
+            new Thread(runnable, "PepperMint theme loader").start();
+        }).exceptionally(e -> {
+            e.printStackTrace();
+            return getThemeModeModel();
+        });
+    }
+
+    /**
+     * Finds and parses the current theme and loads its look and feel class, without
+     * touching Swing. Safe to call from any thread
+     * @return The custom theme, or a model of the current theme mode if there is none
+     */
+    public ThemeModel resolveCurrentTheme() {
+        ThemeModel model = null;
+
+        // First check if it's a custom theme
+        if (!"default".equals(currentTheme) && !"light".equals(currentTheme) && !"dark".equals(currentTheme)) {
+            // Validate that the custom theme exists before trying to load it
+            if (isCustomThemeValid(currentTheme)) {
+                // Try to load a custom theme from the themes directory
+                model = loadCustomTheme(currentTheme);
+            }
+            if (model == null) {
                 // If custom theme doesn't exist or fails to load, fall back to theme mode
                 System.out.println("Warning: Custom theme '" + currentTheme + "' not found or invalid, falling back to theme mode: " + currentThemeMode);
             }
+        }
 
-            // Apply theme based on theme mode if available
-            if ("dark".equals(currentThemeMode)) {
-                // Apply FlatLaf Dark theme if available
-                try {
-                    Class<?> flatDarkLafClass = Class.forName("com.formdev.flatlaf.FlatDarkLaf");
-                    Object laf = flatDarkLafClass.getDeclaredConstructor().newInstance();
-                    UIManager.setLookAndFeel((javax.swing.LookAndFeel) laf);
-                } catch (Exception ex) {
-                    // FlatLaf not available, continue with default L&F
-                    UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-                }
-            } else {
-                // Apply FlatLaf Light theme if available (default/fallback)
-                try {
-                    Class<?> flatLightLafClass = Class.forName("com.formdev.flatlaf.FlatLightLaf");
-                    Object laf = flatLightLafClass.getDeclaredConstructor().newInstance();
-                    UIManager.setLookAndFeel((javax.swing.LookAndFeel) laf);
-                } catch (Exception ex) {
-                    // FlatLaf not available, continue with default L&F
-                    UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-                }
-            }
+        if (model == null) {
+            model = getThemeModeModel();
+        }
+
+        // Class loading and static initialization of FlatLaf happen here rather than on the EDT
+        try {
+            Class.forName(getLookAndFeelClassName(model.isDark()));
+        } catch (ClassNotFoundException | LinkageError e) {
+            // FlatLaf not available, installLookAndFeel() falls back to the system L&F
+        }
+        return model;
+    }
+
+    /**
+     * Applies a resolved theme. Must be called on the EDT
+     * @param model Theme returned by resolveCurrentTheme()
+     */
+    public void applyTheme(ThemeModel model) {
+        try {
+            applyThemeModel(model);
         } catch (Exception e) {
             e.printStackTrace();
             // On error, use system default as fallback
@@ -239,6 +190,13 @@ public class ThemeManager {
         }
     }
 
+    /**
+     * Built-in theme for the current theme mode, light being the default/fallback
+     */
+    private ThemeModel getThemeModeModel() {
+        return new ThemeModel(currentThemeMode, "dark".equals(currentThemeMode));
+    }
+
     /**
      * Checks if a custom theme exists and is valid
      * @param themeName The name of the theme to validate
@@ -276,9 +234,9 @@ public class ThemeManager {
     /**
      * Loads a custom theme from the PepperMintThemes directory
      * @param themeName Name of the theme directory or .pmt file
-     * @return true if theme was loaded successfully, false otherwise
+     * @return The parsed theme, or null if it could not be loaded
      */
-    private boolean loadCustomTheme(String themeName) {
+    private ThemeModel loadCustomTheme(String themeName) {
         Path themesDir = Paths.get("PepperMintThemes");
         Path themePath = themesDir.resolve(themeName + ".pmt");
         Path themeDir = themesDir.resolve(themeName);
@@ -286,24 +244,15 @@ public class ThemeManager {
         // First, check if it's a .pmt file
         if (Files.exists(themePath)) {
             try {
-                // Extract the theme package if it's a .pmt file
-                extractThemePackage(themePath);
-
-                // For simplicity in this implementation, we'll just check for a theme.toml file
-                Path themeToml = themesDir.resolve(themeName).resolve("theme.toml");
-
-                if (Files.exists(themeToml)) {
-                    // Parse theme.toml and apply customizations
-                    applyThemeFromToml(themeToml);
-                    return true;
-                }
+                // Served from the theme cache unless this package content is new
+                return loadThemeModel(themePath);
             } catch (NoClassDefFoundError e) {
                 // Handle missing dependencies gracefully
                 System.out.println("Missing dependencies for theme package extraction: " + e.getMessage());
-                return false;
+                return null;
             } catch (Exception e) {
                 e.printStackTrace();
-                return false;
+                return null;
             }
         }
 
@@ -314,138 +263,121 @@ public class ThemeManager {
                 Path themeToml = themeDir.resolve("theme.toml");
 
                 if (Files.exists(themeToml)) {
-                    // Parse theme.toml and apply customizations
-                    applyThemeFromToml(themeToml);
-                    return true;
+                    // Parse theme.toml and its manifest
+                    return parseThemeToml(themeToml);
                 }
             } catch (Exception e) {
                 e.printStackTrace();
-                return false;
+                return null;
             }
         }
 
-        return false;
+        return null;
     }
     
     /**
-     * Extracts a theme package (.pmt file)
+     * Gets the parsed model of a theme package through the theme cache. The package
+     * is only read and parsed if its content has not been seen before
      * @param packagePath Path to the .pmt file
+     * @return The theme model
      */
-    private void extractThemePackage(Path packagePath) throws IOException {
+    public ThemeModel loadThemeModel(Path packagePath) throws IOException {
+        return themeCache.get(packagePath, this::parseThemePackage);
+    }
+
+    /**
+     * Reads a theme package's theme.toml and mani.toml and parses them, without
+     * extracting anything to disk
+     * @param packagePath Path to the .pmt file
+     * @return The theme model
+     */
+    private ThemeModel parseThemePackage(Path packagePath) throws IOException {
         String themeName = packagePath.getFileName().toString();
         themeName = themeName.substring(0, themeName.length() - 4); // Remove .pmt extension
+        return ThemePackage.readModel(packagePath, themeName);
+    }
 
-        Path extractDir = Paths.get("PepperMintThemes").resolve(themeName);
-
-        // Clean up any existing extracted files
-        if (Files.exists(extractDir)) {
-            deleteRecursively(extractDir);
-        }
-
-        // Create directory if it doesn't exist
-        Files.createDirectories(extractDir);
-
-        // Extract the XZ-compressed tarball
-        try (FileInputStream fileIn = new FileInputStream(packagePath.toFile());
-             XZCompressorInputStream xzIn = new XZCompressorInputStream(fileIn);
-             TarArchiveInputStream tarIn = new TarArchiveInputStream(xzIn)) {
+    /**
+     * Extracts a theme package (.pmt file) to PepperMintThemes/<name>/. Applying a
+     * theme does not need this; use it only when the theme files are needed on disk.
+     * An existing extraction is replaced atomically and unchanged files are kept
+     * @param packagePath Path to the .pmt file
+     */
+    public void extractThemePackage(Path packagePath) throws IOException {
+        String themeName = packagePath.getFileName().toString();
+        themeName = themeName.substring(0, themeName.length() - 4); // Remove .pmt extension
 
-            TarArchiveEntry entry;
-            while ((entry = tarIn.getNextTarEntry()) != null) {
-                Path entryPath = extractDir.resolve(entry.getName()).normalize();
+        Path extractDir = Paths.get("PepperMintThemes").resolve(themeName);
+        ArchiveReader.extractTarXzAtomically(packagePath, extractDir);
+    }
 
-                // Security check to prevent path traversal
-                if (!entryPath.startsWith(extractDir)) {
-                    throw new IOException("Entry is outside of target directory: " + entry.getName());
-                }
+    /**
+     * Parses a theme directory's theme.toml file and the mani.toml next to it
+     * @param themeToml Path to the theme.toml file
+     * @return The theme model
+     */
+    static ThemeModel parseThemeToml(Path themeToml) throws IOException {
+        String themeName = themeToml.getParent().getFileName().toString();
+        Path manifestToml = themeToml.resolveSibling(ThemePackage.MANIFEST_TOML);
+        String manifest = Files.exists(manifestToml) ? Files.readString(manifestToml) : null;
+        return ThemeModel.parse(themeName, Files.readString(themeToml), manifest);
+    }
 
-                if (entry.isDirectory()) {
-                    Files.createDirectories(entryPath);
-                } else {
-                    // Create parent directories if they don't exist
-                    Files.createDirectories(entryPath.getParent());
-                    // Copy the file content
-                    try (FileOutputStream fileOut = new FileOutputStream(entryPath.toFile())) {
-                        byte[] buffer = new byte[8192];
-                        int bytesRead;
-                        while ((bytesRead = tarIn.read(buffer)) != -1) {
-                            fileOut.write(buffer, 0, bytesRead);
-                        }
-                    }
-                }
-            }
+    /**
+     * Applies a parsed theme: the base look and feel is installed once, the theme
+     * colors go into its defaults in one batch, and every open window is refreshed once
+     * @param model The theme to apply
+     */
+    private void applyThemeModel(ThemeModel model) throws UnsupportedLookAndFeelException {
+        installLookAndFeel(model.isDark());
+
+        Object[] defaults = model.toUIDefaults();
+        if (defaults.length > 0) {
+            // Look and feel defaults rather than UIManager.getDefaults(), so the colors
+            // are dropped again when another theme installs its look and feel
+            UIManager.getLookAndFeelDefaults().putDefaults(defaults);
         }
+        refreshWindows();
     }
 
     /**
-     * Recursively deletes a directory and its contents
-     * @param path Path to the directory or file to delete
+     * Updates the UI of every open window once after the look and feel changed
      */
-    private void deleteRecursively(Path path) throws IOException {
-        if (Files.isDirectory(path)) {
-            Files.walk(path)
-                .sorted(java.util.Comparator.reverseOrder())
-                .forEach(file -> {
-                    try {
-                        Files.delete(file);
-                    } catch (IOException e) {
-                        // Ignore errors during cleanup
-                    }
-                });
-        } else {
-            Files.delete(path);
+    private void refreshWindows() {
+        for (Window window : Window.getWindows()) {
+            SwingUtilities.updateComponentTreeUI(window);
         }
     }
-    
+
     /**
-     * Applies theme settings from theme.toml file
-     * @param themeToml Path to the theme.toml file
+     * Installs FlatLaf Dark or Light, falling back to the system look and feel if
+     * FlatLaf is not available
+     * @param dark Whether to install the dark variant
      */
-    private void applyThemeFromToml(Path themeToml) throws IOException {
-        // Read the content of theme.toml
-        String content = Files.readString(themeToml);
-
-        // In a real implementation, this would parse the TOML file and apply theme settings
-        // For this prototype, we'll implement a basic theme application
-
-        // Example: Check for dark mode setting in the TOML content
-        if (content.contains("dark_mode = true") || content.toLowerCase().contains("dark")) {
-            // Apply FlatLaf Dark theme
-            try {
-                Class<?> flatDarkLafClass = Class.forName("com.formdev.flatlaf.FlatDarkLaf");
-                Object laf = flatDarkLafClass.getDeclaredConstructor().newInstance();
-                UIManager.setLookAndFeel((javax.swing.LookAndFeel) laf);
-            } catch (Exception e) {
-                e.printStackTrace();
-                // Fallback to light theme
-                try {
-                    Class<?> flatLightLafClass = Class.forName("com.formdev.flatlaf.FlatLightLaf");
-                    Object laf = flatLightLafClass.getDeclaredConstructor().newInstance();
-                    UIManager.setLookAndFeel((javax.swing.LookAndFeel) laf);
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
-            }
-        } else {
-            // Apply FlatLaf Light theme
+    private void installLookAndFeel(boolean dark) throws UnsupportedLookAndFeelException {
+        try {
+            Class<?> lafClass = Class.forName(getLookAndFeelClassName(dark));
+            UIManager.setLookAndFeel((LookAndFeel) lafClass.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // FlatLaf not available, continue with default L&F
             try {
-                Class<?> flatLightLafClass = Class.forName("com.formdev.flatlaf.FlatLightLaf");
-                Object laf = flatLightLafClass.getDeclaredConstructor().newInstance();
-                UIManager.setLookAndFeel((javax.swing.LookAndFeel) laf);
-            } catch (Exception e) {
-                e.printStackTrace();
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (ReflectiveOperationException ex) {
+                ex.printStackTrace();
             }
         }
     }
-    
+
+    private static String getLookAndFeelClassName(boolean dark) {
+        return dark ? "com.formdev.flatlaf.FlatDarkLaf" : "com.formdev.flatlaf.FlatLightLaf";
+    }
+
     /**
      * Switches to dark theme using FlatLaf
      */
     public void setDarkTheme() {
         try {
-            Class<?> flatDarkLafClass = Class.forName("com.formdev.flatlaf.FlatDarkLaf");
-            Object laf = flatDarkLafClass.getDeclaredConstructor().newInstance();
-            UIManager.setLookAndFeel((javax.swing.LookAndFeel) laf);
+            installLookAndFeel(true);
             setCurrentTheme("dark");
             setCurrentThemeMode("dark");
         } catch (Exception e) {
@@ -458,9 +390,7 @@ public class ThemeManager {
      */
     public void setLightTheme() {
         try {
-            Class<?> flatLightLafClass = Class.forName("com.formdev.flatlaf.FlatLightLaf");
-            Object laf = flatLightLafClass.getDeclaredConstructor().newInstance();
-            UIManager.setLookAndFeel((javax.swing.LookAndFeel) laf);
+            installLookAndFeel(false);
             setCurrentTheme("light");
             setCurrentThemeMode("light");
         } catch (Exception e) {
@@ -473,7 +403,6 @@ public class ThemeManager {
      * @param themeName Name of the theme to set as current
      */
     public void setCurrentTheme(String themeName) {
-        this.currentTheme = themeName;
         configManager.setCurrentTheme(themeName);
     }
     
@@ -490,7 +419,6 @@ public class ThemeManager {
      * @param themeMode Mode of the theme to set as current (light/dark)
      */
     public void setCurrentThemeMode(String themeMode) {
-        this.currentThemeMode = themeMode;
         configManager.setCurrentThemeMode(themeMode);
     }
 
@@ -507,29 +435,34 @@ public class ThemeManager {
      * @return Array of theme names
      */
     public String[] getAvailableThemes() {
-        Path themesDir = Paths.get("PepperMintThemes");
+        return themeIndex.getEntries().stream()
+                .map(ThemeIndex.Entry::getName)
+                .toArray(String[]::new);
+    }
 
-        try {
-            if (!Files.exists(themesDir)) {
-                Files.createDirectories(themesDir);
-            }
+    /**
+     * Gets the index of installed themes. The index is watched for changes once
+     * the first caller has started it
+     * @return The ThemeIndex instance
+     */
+    public ThemeIndex getThemeIndex() {
+        return themeIndex;
+    }
 
-            // Look for .pmt files and directories in the themes folder
-            return Files.list(themesDir)
-                    .filter(path -> !path.getFileName().toString().equals("example-theme") && // Exclude example-theme from available themes
-                                  (path.toString().endsWith(".pmt") || Files.isDirectory(path)))
-                    .map(path -> {
-                        String name = path.getFileName().toString();
-                        if (name.endsWith(".pmt")) {
-                            name = name.substring(0, name.length() - 4);
-                        }
-                        return name;
-                    })
-                    .toArray(String[]::new);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return new String[]{DEFAULT_THEME};
-        }
+    /**
+     * Gets the installer used to add theme packages
+     * @return The ThemeInstaller instance
+     */
+    public ThemeInstaller getThemeInstaller() {
+        return themeInstaller;
+    }
+
+    /**
+     * Gets the cache of parsed theme packages
+     * @return The ThemeCache instance
+     */
+    public ThemeCache getThemeCache() {
+        return themeCache;
     }
 
     /**
@@ -0,0 +1,330 @@
+package peppermint.themes;
+
+import peppermint.config.TomlDocument;
+import peppermint.config.TomlParser;
+
+import javax.swing.plaf.ColorUIResource;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Parsed form of a theme's theme.toml and mani.toml, holding everything needed
+ * to apply the theme without reading the theme files again. Instances are immutable.
+ */
+public final class ThemeModel {
+    // Version of the properties written by toProperties(); older cache entries are parsed again
+    static final int CACHE_FORMAT = 3;
+
+    // UIManager keys that take each theme color, applied on top of the FlatLaf defaults
+    private static final String[] BACKGROUND_KEYS = {
+        "Panel.background", "control", "window", "RootPane.background", "Viewport.background",
+        "OptionPane.background", "ScrollPane.background", "SplitPane.background", "TabbedPane.background",
+        "ToolBar.background", "MenuBar.background", "PopupMenu.background", "CheckBox.background",
+        "RadioButton.background"
+    };
+    private static final String[] FOREGROUND_KEYS = {
+        "Panel.foreground", "Label.foreground", "controlText", "textText", "windowText",
+        "Button.foreground", "CheckBox.foreground", "RadioButton.foreground", "ComboBox.foreground",
+        "TextField.foreground", "TextArea.foreground", "List.foreground", "Menu.foreground",
+        "MenuItem.foreground", "TabbedPane.foreground", "TitledBorder.titleColor", "OptionPane.messageForeground"
+    };
+    private static final String[] PRIMARY_KEYS = {
+        "Component.accentColor", "Component.focusColor", "Component.focusedBorderColor",
+        "Button.default.background", "ProgressBar.foreground", "Slider.thumbColor", "Slider.trackValueColor",
+        "TabbedPane.underlineColor", "CheckBox.icon.selectedBackground", "List.selectionBackground",
+        "Table.selectionBackground", "ComboBox.selectionBackground", "TextField.selectionBackground",
+        "TextArea.selectionBackground", "Menu.selectionBackground", "MenuItem.selectionBackground"
+    };
+    private static final String[] SECONDARY_KEYS = {
+        "Component.linkColor", "Button.default.hoverBackground", "Button.default.pressedBackground",
+        "TabbedPane.hoverColor", "ToggleButton.selectedBackground"
+    };
+
+    private final String name;
+    private final boolean dark;
+    private final String author;
+    private final String version;
+    private final Color primary;
+    private final Color secondary;
+    private final Color background;
+    private final Color foreground;
+    // Whether name and dark were derived from the theme name rather than read from theme.toml
+    private final boolean nameFromTheme;
+    private final boolean darkFromName;
+
+    public ThemeModel(String name, boolean dark) {
+        this(name, dark, null, null);
+    }
+
+    public ThemeModel(String name, boolean dark, String author, String version) {
+        this(name, dark, author, version, null, null, null, null);
+    }
+
+    public ThemeModel(String name, boolean dark, String author, String version,
+                      Color primary, Color secondary, Color background, Color foreground) {
+        this(name, dark, author, version, primary, secondary, background, foreground, false, false);
+    }
+
+    private ThemeModel(String name, boolean dark, String author, String version,
+                       Color primary, Color secondary, Color background, Color foreground,
+                       boolean nameFromTheme, boolean darkFromName) {
+        this.name = name;
+        this.dark = dark;
+        this.author = author;
+        this.version = version;
+        this.primary = primary;
+        this.secondary = secondary;
+        this.background = background;
+        this.foreground = foreground;
+        this.nameFromTheme = nameFromTheme;
+        this.darkFromName = darkFromName;
+    }
+
+    /**
+     * Parses the content of a theme.toml file
+     * @param themeName Name used if theme.toml does not name the theme
+     * @param themeToml Content of theme.toml
+     * @return The parsed theme
+     */
+    public static ThemeModel parse(String themeName, String themeToml) {
+        return parse(themeName, themeToml, null);
+    }
+
+    /**
+     * Parses the content of a theme's theme.toml and mani.toml files. If theme.toml
+     * has no name, the model takes the theme name and can be moved to another name
+     * with withThemeName(), so identical packages can share it
+     * @param themeName Name used if theme.toml does not name the theme
+     * @param themeToml Content of theme.toml
+     * @param manifestToml Content of mani.toml, or null if the theme has none
+     * @return The parsed theme
+     * @throws IllegalArgumentException if either file is not valid TOML
+     */
+    public static ThemeModel parse(String themeName, String themeToml, String manifestToml) {
+        TomlDocument theme = TomlParser.parse(themeToml);
+        TomlDocument manifest = manifestToml != null ? TomlParser.parse(manifestToml) : null;
+
+        String name = theme.getString("theme.name", null);
+        boolean nameFromTheme = name == null;
+        if (nameFromTheme) {
+            name = themeName;
+        }
+        // Themes without dark_mode are dark if their name says so
+        boolean darkFromName = !(theme.get("theme.dark_mode") instanceof Boolean);
+        boolean dark = theme.getBoolean("theme.dark_mode", isDarkName(name));
+        String author = manifest != null ? manifest.getString("manifest.author", null) : null;
+        if (author == null) {
+            author = theme.getString("theme.developer", null);
+        }
+        String version = manifest != null ? manifest.getString("manifest.version", null) : null;
+
+        return new ThemeModel(name, dark, author, version,
+                              parseColor(theme, "colors.primary"), parseColor(theme, "colors.secondary"),
+                              parseColor(theme, "colors.background"), parseColor(theme, "colors.foreground"),
+                              nameFromTheme, darkFromName);
+    }
+
+    /**
+     * Gets this model as parsed for another theme name. Only a model whose
+     * theme.toml has no name changes: it takes the new name, and the new name
+     * decides whether it is dark unless theme.toml sets dark_mode
+     * @param themeName Name of the theme the files belong to, e.g. the package file name
+     * @return The model for that name
+     */
+    public ThemeModel withThemeName(String themeName) {
+        if (!nameFromTheme || themeName.equals(name)) {
+            return this;
+        }
+        return new ThemeModel(themeName, darkFromName ? isDarkName(themeName) : dark, author, version,
+                              primary, secondary, background, foreground, true, darkFromName);
+    }
+
+    private static boolean isDarkName(String name) {
+        return name.toLowerCase(Locale.ROOT).contains("dark");
+    }
+
+    /**
+     * Gets the display name from theme.toml
+     * @return Theme name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether the theme is applied on top of the dark look and feel
+     * @return true for dark themes
+     */
+    public boolean isDark() {
+        return dark;
+    }
+
+    /**
+     * Gets the author from the theme's manifest, or the developer from theme.toml
+     * @return Author, or null if unknown
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Gets the version from the theme's manifest
+     * @return Version, or null if unknown
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the accent color
+     * @return Color, or null if the theme keeps the look and feel's own
+     */
+    public Color getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Gets the secondary accent color, used for links and hovered default buttons
+     * @return Color, or null if the theme keeps the look and feel's own
+     */
+    public Color getSecondary() {
+        return secondary;
+    }
+
+    /**
+     * Gets the background color of windows, panels and menus
+     * @return Color, or null if the theme keeps the look and feel's own
+     */
+    public Color getBackground() {
+        return background;
+    }
+
+    /**
+     * Gets the text color
+     * @return Color, or null if the theme keeps the look and feel's own
+     */
+    public Color getForeground() {
+        return foreground;
+    }
+
+    /**
+     * Maps the theme colors to UIManager keys, ready for a single UIDefaults.putDefaults() call.
+     * Values are UIResources, so they are replaced when the look and feel is installed again
+     * @return Alternating keys and values; empty if the theme sets no colors
+     */
+    public Object[] toUIDefaults() {
+        List<Object> keyValues = new ArrayList<>();
+        addDefaults(keyValues, BACKGROUND_KEYS, background);
+        addDefaults(keyValues, FOREGROUND_KEYS, foreground);
+        addDefaults(keyValues, PRIMARY_KEYS, primary);
+        addDefaults(keyValues, SECONDARY_KEYS, secondary);
+        return keyValues.toArray();
+    }
+
+    private static void addDefaults(List<Object> keyValues, String[] keys, Color color) {
+        if (color == null) {
+            return;
+        }
+        ColorUIResource value = new ColorUIResource(color);
+        for (String key : keys) {
+            keyValues.add(key);
+            keyValues.add(value);
+        }
+    }
+
+    /**
+     * Converts the model into properties for the theme cache. Values derived from
+     * the theme name are left out, so the properties only depend on the files
+     * @return Properties describing this model
+     */
+    Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("format", Integer.toString(CACHE_FORMAT));
+        if (!nameFromTheme) {
+            properties.setProperty("name", name);
+        }
+        if (!darkFromName) {
+            properties.setProperty("dark", Boolean.toString(dark));
+        }
+        setIfPresent(properties, "author", author);
+        setIfPresent(properties, "version", version);
+        setIfPresent(properties, "color.primary", formatColor(primary));
+        setIfPresent(properties, "color.secondary", formatColor(secondary));
+        setIfPresent(properties, "color.background", formatColor(background));
+        setIfPresent(properties, "color.foreground", formatColor(foreground));
+        return properties;
+    }
+
+    /**
+     * Restores a model stored by toProperties()
+     * @param properties Stored properties
+     * @param themeName Name used if the stored model has none, e.g. the package file name
+     * @return The model, or null if the properties are from an older cache format
+     */
+    static ThemeModel fromProperties(Properties properties, String themeName) {
+        if (!Integer.toString(CACHE_FORMAT).equals(properties.getProperty("format"))) {
+            return null;
+        }
+        String name = properties.getProperty("name");
+        String dark = properties.getProperty("dark");
+        boolean nameFromTheme = name == null;
+        boolean darkFromName = dark == null;
+        if (nameFromTheme) {
+            name = themeName;
+        }
+        return new ThemeModel(name, darkFromName ? isDarkName(name) : Boolean.parseBoolean(dark),
+                              properties.getProperty("author"), properties.getProperty("version"),
+                              decodeColor(properties.getProperty("color.primary")),
+                              decodeColor(properties.getProperty("color.secondary")),
+                              decodeColor(properties.getProperty("color.background")),
+                              decodeColor(properties.getProperty("color.foreground")),
+                              nameFromTheme, darkFromName);
+    }
+
+    private static void setIfPresent(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Reads a "#RRGGBB" color. Invalid colors are reported and ignored, so the
+     * rest of the theme still applies
+     */
+    private static Color parseColor(TomlDocument theme, String key) {
+        String value = theme.getString(key, null);
+        if (value == null) {
+            return null;
+        }
+        Color color = decodeColor(value);
+        if (color == null) {
+            System.out.println("Warning: Ignoring invalid color " + key + " = \"" + value + "\"");
+        }
+        return color;
+    }
+
+    private static Color decodeColor(String value) {
+        if (value == null || value.length() != 7 || value.charAt(0) != '#') {
+            return null;
+        }
+        try {
+            return new Color(Integer.parseInt(value, 1, 7, 16));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String formatColor(Color color) {
+        return color != null ? String.format("#%06X", color.getRGB() & 0xFFFFFF) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "ThemeModel{name='" + name + "', dark=" + dark + ", author='" + author + "', version='" + version
+            + "', primary=" + formatColor(primary) + ", secondary=" + formatColor(secondary)
+            + ", background=" + formatColor(background) + ", foreground=" + formatColor(foreground) + "}";
+    }
+}
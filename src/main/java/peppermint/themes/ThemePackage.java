@@ -0,0 +1,151 @@
+package peppermint.themes;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import peppermint.archive.ArchiveReader;
+import peppermint.archive.IndexedTarReader;
+
+/**
+ * A theme package (.pmt) read entirely into memory. The XZ-compressed tarball is
+ * streamed into a map of entry names to contents, so a theme can be parsed and
+ * applied without writing anything to disk.
+ *
+ * Version 2 packages (see IndexedTarWriter) are read the same way, without their
+ * index. readModel() uses the index to read only theme.toml and mani.toml.
+ */
+public final class ThemePackage {
+    public static final String THEME_TOML = "theme.toml";
+    public static final String MANIFEST_TOML = "mani.toml";
+
+    // Upper bound for the unpacked size of a package, guarding against decompression bombs
+    private static final long MAX_PACKAGE_BYTES = 64L << 20;
+
+    private final Map<String, byte[]> entries;
+
+    private ThemePackage(Map<String, byte[]> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Reads a theme package into memory
+     * @param packagePath Path to the .pmt file
+     * @return The package contents
+     * @throws IOException if the package cannot be read or is larger than 64 MiB unpacked
+     */
+    public static ThemePackage read(Path packagePath) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(packagePath), 64 * 1024)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a theme package from a stream of XZ-compressed tar data
+     * @param in Package data; not closed
+     * @return The package contents
+     * @throws IOException if the data cannot be read or is larger than 64 MiB unpacked
+     */
+    public static ThemePackage read(InputStream in) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        long[] remaining = {MAX_PACKAGE_BYTES};
+
+        ArchiveReader.readTarXz(in, (name, size, content) -> {
+            if (size > remaining[0]) {
+                throw new IOException("Theme package is larger than " + (MAX_PACKAGE_BYTES >> 20) + " MiB unpacked");
+            }
+            remaining[0] -= size;
+
+            byte[] data = content.readNBytes((int) size);
+            if (data.length != size) {
+                throw new IOException("Theme package is truncated at entry: " + name);
+            }
+            entries.put(name, data);
+            return true;
+        });
+
+        return new ThemePackage(entries);
+    }
+
+    /**
+     * Parses the theme.toml and mani.toml of a package. For version 2 packages only
+     * those two files are decompressed; version 1 packages are read entirely
+     * @param packagePath Path to the .pmt file
+     * @param themeName Name of the theme the package belongs to
+     * @return The theme model
+     * @throws IOException if the package cannot be read or has no theme.toml
+     */
+    public static ThemeModel readModel(Path packagePath, String themeName) throws IOException {
+        try (IndexedTarReader reader = IndexedTarReader.open(packagePath)) {
+            if (reader == null) {
+                return read(packagePath).toModel(themeName);
+            }
+
+            String themeToml = reader.getText(THEME_TOML);
+            if (themeToml == null) {
+                throw new IOException("Theme package has no " + THEME_TOML);
+            }
+            return ThemeModel.parse(themeName, themeToml, reader.getText(MANIFEST_TOML));
+        }
+    }
+
+    /**
+     * Whether the package holds a file
+     * @param name Entry name relative to the package root, e.g. "theme.toml"
+     * @return true if the entry exists
+     */
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Opens an entry for reading. The stream reads the in-memory content directly
+     * @param name Entry name relative to the package root
+     * @return Stream over the entry, or null if there is no such entry
+     */
+    public InputStream openEntry(String name) {
+        byte[] content = entries.get(name);
+        return content != null ? new ByteArrayInputStream(content) : null;
+    }
+
+    /**
+     * Gets an entry as UTF-8 text
+     * @param name Entry name relative to the package root
+     * @return Entry content, or null if there is no such entry
+     */
+    public String getText(String name) {
+        byte[] content = entries.get(name);
+        return content != null ? new String(content, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Gets the names of all files in the package, in archive order
+     * @return Read-only set of entry names
+     */
+    public Set<String> getEntryNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Parses the package's theme.toml and mani.toml
+     * @param themeName Name of the theme the package belongs to
+     * @return The theme model
+     * @throws IOException if the package has no theme.toml
+     */
+    public ThemeModel toModel(String themeName) throws IOException {
+        String themeToml = getText(THEME_TOML);
+        if (themeToml == null) {
+            throw new IOException("Theme package has no " + THEME_TOML);
+        }
+        return ThemeModel.parse(themeName, themeToml, getText(MANIFEST_TOML));
+    }
+
+}
@@ -14,10 +14,8 @@ import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-// Import for XZ compression
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
-import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import peppermint.archive.ArchiveReader;
+import peppermint.archive.ParallelXZOutputStream;
 
 public class CustomThemeCreator extends JFrame {
     private JTextField nameField;
@@ -38,6 +36,8 @@ public class CustomThemeCreator extends JFrame {
     private JButton selectSecondaryColorButton;
     private JButton selectBackgroundColorButton;
     private JButton selectForegroundColorButton;
+    private JSpinner compressionLevelSpinner;
+    private JProgressBar packagingProgressBar;
     private String selectedKeyPath;
 
     public CustomThemeCreator() {
@@ -75,6 +75,12 @@ public class CustomThemeCreator extends JFrame {
         selectBackgroundColorButton = new JButton("Choose");
         selectForegroundColorButton = new JButton("Choose");
 
+        // XZ preset: 0 is fastest, 9 compresses best
+        compressionLevelSpinner = new JSpinner(new SpinnerNumberModel(ParallelXZOutputStream.DEFAULT_PRESET, 0, 9, 1));
+        packagingProgressBar = new JProgressBar(0, 100);
+        packagingProgressBar.setStringPainted(true);
+        packagingProgressBar.setVisible(false);
+
         // Set up event handler for encrypted checkbox
         encryptedCheckBox.addActionListener(e -> {
             passwordField.setEnabled(encryptedCheckBox.isSelected());
@@ -153,6 +159,12 @@ public class CustomThemeCreator extends JFrame {
         mainInputPanel.add(foregroundColorPanel, gbc);
 
         gbc.gridx = 0; gbc.gridy = 11;
+        gbc.gridwidth = 1;
+        mainInputPanel.add(new JLabel("Compression Level:"), gbc);
+        gbc.gridx = 1;
+        mainInputPanel.add(compressionLevelSpinner, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 12;
         gbc.gridwidth = 2;
         gbc.anchor = GridBagConstraints.EAST;
         mainInputPanel.add(createThemeButton, gbc);
@@ -182,6 +194,7 @@ public class CustomThemeCreator extends JFrame {
 
         add(descriptionArea, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
+        add(packagingProgressBar, BorderLayout.SOUTH);
     }
     
     private void setupEventHandlers() {
@@ -305,14 +318,121 @@ public class CustomThemeCreator extends JFrame {
                 return;
             }
 
-            // Create theme package
+            Path existing = themesDir.resolve(name + ".pmt");
+            if (Files.exists(existing)) {
+                int confirm = JOptionPane.showConfirmDialog(
+                    CustomThemeCreator.this,
+                    "A theme named '" + name + "' is already installed. Replace it?",
+                    "Replace Theme",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.WARNING_MESSAGE
+                );
+                if (confirm != JOptionPane.YES_OPTION) {
+                    return;
+                }
+            }
+
+            // Package the theme in the background; the form stays usable meanwhile
+            ThemeFiles files = new ThemeFiles(
+                buildThemeToml(name, developer, darkMode, encrypted),
+                buildManifestToml(name, developer, encrypted),
+                encrypted ? selectedKeyPath : null);
+            new ThemePackagingWorker(name, files, themesDir, (Integer) compressionLevelSpinner.getValue()).execute();
+        }
+
+        private boolean isValidHexColor(String color) {
+            if (color == null || !color.startsWith("#")) {
+                return false;
+            }
+            String hex = color.substring(1);
+            return hex.length() == 6 && hex.matches("[0-9A-Fa-f]+");
+        }
+
+        private String buildThemeToml(String name, String developer, boolean darkMode, boolean encrypted) {
+            // Theme information including colors
+            return "# PepperMint Theme Configuration\n"
+                + "[theme]\n"
+                + "name = \"" + name + "\"\n"
+                + "developer = \"" + developer + "\"\n"
+                + "encrypted = " + encrypted + "\n"
+                + "version = \"1.0\"\n"
+                + "dark_mode = " + darkMode + "\n"
+                + "\n[colors]\n"
+                + "primary = \"" + primaryColorField.getText() + "\"\n"
+                + "secondary = \"" + secondaryColorField.getText() + "\"\n"
+                + "background = \"" + backgroundColorField.getText() + "\"\n"
+                + "foreground = \"" + foregroundColorField.getText() + "\"\n";
+        }
+
+        private String buildManifestToml(String name, String developer, boolean encrypted) {
+            return "# PepperMint Theme Manifest\n"
+                + "[manifest]\n"
+                + "name = \"" + name + "\"\n"
+                + "author = \"" + developer + "\"\n"
+                + "version = \"1.0\"\n"
+                + "type = \"theme\"\n"
+                + "encryption = " + encrypted + "\n";
+        }
+    }
+
+    /**
+     * Contents of a theme package, captured from the form on the EDT
+     */
+    private static final class ThemeFiles {
+        final String themeToml;
+        final String manifestToml;
+        final String keyPath;
+
+        ThemeFiles(String themeToml, String manifestToml, String keyPath) {
+            this.themeToml = themeToml;
+            this.manifestToml = manifestToml;
+            this.keyPath = keyPath;
+        }
+    }
+
+    /**
+     * Writes a theme package off the EDT, compressing on all CPUs and reporting
+     * progress by the share of theme bytes packaged
+     */
+    private class ThemePackagingWorker extends SwingWorker<Path, Void> {
+        private final String name;
+        private final ThemeFiles files;
+        private final Path themesDir;
+        private final int compressionLevel;
+
+        ThemePackagingWorker(String name, ThemeFiles files, Path themesDir, int compressionLevel) {
+            this.name = name;
+            this.files = files;
+            this.themesDir = themesDir;
+            this.compressionLevel = compressionLevel;
+
+            createThemeButton.setEnabled(false);
+            packagingProgressBar.setValue(0);
+            packagingProgressBar.setString("Packaging " + name + "...");
+            packagingProgressBar.setVisible(true);
+            addPropertyChangeListener(event -> {
+                if ("progress".equals(event.getPropertyName())) {
+                    packagingProgressBar.setValue((Integer) event.getNewValue());
+                }
+            });
+        }
+
+        @Override
+        protected Path doInBackground() throws Exception {
+            return createThemePackage();
+        }
+
+        @Override
+        protected void done() {
+            createThemeButton.setEnabled(true);
+            packagingProgressBar.setVisible(false);
             try {
-                createThemePackage(name, developer, darkMode, encrypted, password, selectedKeyPath, themesDir);
+                Path pmtFile = get();
 
                 JOptionPane.showMessageDialog(
                     CustomThemeCreator.this,
                     "Theme '" + name + "' created successfully!\n" +
-                    "File: " + name + ".pmt\n" +
+                    "File: " + pmtFile.getFileName() + "\n" +
                     "Location: " + themesDir.toAbsolutePath(),
                     "Theme Created",
                     JOptionPane.INFORMATION_MESSAGE
@@ -331,69 +451,35 @@ public class CustomThemeCreator extends JFrame {
                 foregroundColorField.setText("#000000");
                 selectedKeyPath = null;
             } catch (Exception ex) {
+                Throwable cause = ex instanceof java.util.concurrent.ExecutionException ? ex.getCause() : ex;
                 JOptionPane.showMessageDialog(
                     CustomThemeCreator.this,
-                    "Failed to create theme: " + ex.getMessage(),
+                    "Failed to create theme: " + cause.getMessage(),
                     "Creation Error",
                     JOptionPane.ERROR_MESSAGE
                 );
             }
         }
 
-        private boolean isValidHexColor(String color) {
-            if (color == null || !color.startsWith("#")) {
-                return false;
-            }
-            String hex = color.substring(1);
-            return hex.length() == 6 && hex.matches("[0-9A-Fa-f]+");
-        }
-
-        private void createThemePackage(String name, String developer, boolean darkMode, boolean encrypted,
-                                       String password, String keyPath, Path themesDir) throws Exception {
+        private Path createThemePackage() throws IOException {
             // Create a temporary directory to hold theme files
             Path tempDir = Files.createTempDirectory("pmt_theme_" + name);
             try {
-                // Create theme.toml file with theme information including colors
-                Path themeToml = tempDir.resolve("theme.toml");
-                try (FileWriter writer = new FileWriter(themeToml.toFile())) {
-                    writer.write("# PepperMint Theme Configuration\n");
-                    writer.write("[theme]\n");
-                    writer.write("name = \"" + name + "\"\n");
-                    writer.write("developer = \"" + developer + "\"\n");
-                    writer.write("encrypted = " + encrypted + "\n");
-                    writer.write("version = \"1.0\"\n");
-                    writer.write("dark_mode = " + darkMode + "\n");
-
-                    // Add theme colors
-                    writer.write("\n[colors]\n");
-                    writer.write("primary = \"" + primaryColorField.getText() + "\"\n");
-                    writer.write("secondary = \"" + secondaryColorField.getText() + "\"\n");
-                    writer.write("background = \"" + backgroundColorField.getText() + "\"\n");
-                    writer.write("foreground = \"" + foregroundColorField.getText() + "\"\n");
-                }
-
-                // Create mani.toml manifest file
-                Path manifestFile = tempDir.resolve("mani.toml");
-                try (FileWriter writer = new FileWriter(manifestFile.toFile())) {
-                    writer.write("# PepperMint Theme Manifest\n");
-                    writer.write("[manifest]\n");
-                    writer.write("name = \"" + name + "\"\n");
-                    writer.write("author = \"" + developer + "\"\n");
-                    writer.write("version = \"1.0\"\n");
-                    writer.write("type = \"theme\"\n");
-                    writer.write("encryption = " + encrypted + "\n");
-                }
+                Files.writeString(tempDir.resolve("theme.toml"), files.themeToml);
+                Files.writeString(tempDir.resolve("mani.toml"), files.manifestToml);
 
                 // If encrypted, copy the OpenPGP key
-                if (encrypted && keyPath != null) {
-                    Path sourceKey = Paths.get(keyPath);
+                if (files.keyPath != null) {
+                    Path sourceKey = Paths.get(files.keyPath);
                     Path targetKey = tempDir.resolve("openpgp-key.asc");
                     Files.copy(sourceKey, targetKey);
                 }
 
-                // Create the .pmt file (XZ-compressed tarball)
+                // Create the .pmt file (indexed XZ-compressed tarball). It is written under
+                // a hidden name and replaces an existing package only once complete
                 Path pmtFile = themesDir.resolve(name + ".pmt");
                 createXZArchive(tempDir, pmtFile);
+                return pmtFile;
             } finally {
                 // Clean up the temporary directory
                 deleteRecursively(tempDir);
@@ -401,37 +487,9 @@ public class CustomThemeCreator extends JFrame {
         }
 
         private void createXZArchive(Path sourceDir, Path outputPath) throws IOException {
-            try (FileOutputStream fileOut = new FileOutputStream(outputPath.toFile());
-                 XZCompressorOutputStream xzOut = new XZCompressorOutputStream(fileOut);
-                 TarArchiveOutputStream tarOut = new TarArchiveOutputStream(xzOut)) {
-
-                tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
-
-                Files.walk(sourceDir)
-                    .filter(path -> !path.equals(sourceDir))
-                    .forEach(path -> {
-                        try {
-                            String entryName = sourceDir.relativize(path).toString().replace('\\', '/');
-                            TarArchiveEntry entry;
-
-                            if (Files.isDirectory(path)) {
-                                entry = new TarArchiveEntry(entryName + "/");
-                            } else {
-                                entry = new TarArchiveEntry(path.toFile(), entryName);
-                            }
-
-                            tarOut.putArchiveEntry(entry);
-
-                            if (!Files.isDirectory(path)) {
-                                Files.copy(path, tarOut);
-                            }
-
-                            tarOut.closeArchiveEntry();
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
-                    });
-            }
+            ArchiveReader.createTarXz(sourceDir, outputPath, compressionLevel,
+                (done, total) -> setProgress((int) (done * 99 / Math.max(1, total))));
+            setProgress(100);
         }
 
         private void deleteRecursively(Path path) throws IOException {
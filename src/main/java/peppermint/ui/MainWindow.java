@@ -1,8 +1,12 @@
 package peppermint.ui;
 
+import peppermint.AppContext;
+import peppermint.config.ConfigManager;
+import peppermint.gens.GenerationOptions;
 import peppermint.gens.PresetGenerator;
 import peppermint.gens.LevelGenerator;
 import peppermint.gens.PatternGenerator;
+import peppermint.gens.RunSeed;
 import peppermint.gens.SeedSlotGenerator;
 import peppermint.themes.ThemeManager;
 
@@ -12,6 +16,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.SwingUtilities;
 
@@ -32,10 +38,23 @@ public class MainWindow extends JFrame {
     private JMenuItem manageThemesMenuItem;
     private JPanel levelsPanel;
     private JPanel seedSlotsPanel;
+    private JLabel lastSeedLabel;
+    private JProgressBar generationProgressBar;
+    private Timer progressTimer;
+    private PresetWorker currentGeneration;
+    // Presets are generated one at a time, off the EDT
+    private final ExecutorService generationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PepperMint preset generator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ConfigManager config;
+    private ConfigManager.Listener configListener;
 
     public MainWindow(ThemeManager themeManager) {
         this.presetGenerator = new PresetGenerator();
         this.themeManager = themeManager;
+        this.config = themeManager.getConfigManager();
         initializeComponents();
         setupLayout();
         setupEventHandlers();
@@ -44,37 +63,43 @@ public class MainWindow extends JFrame {
         addWindowListener(new java.awt.event.WindowAdapter() {
             @Override
             public void windowClosing(java.awt.event.WindowEvent windowEvent) {
-                // Save the configuration on window close using the provided theme manager
-                try {
-                    themeManager.getConfigManager().saveConfig();
-                    System.out.println("Configuration saved on window close.");
-                } catch (Exception e) {
-                    System.err.println("Error saving configuration on window close: " + e.getMessage());
-                }
-
-                // Exit the application
+                // Exit the application; pending configuration changes are flushed on shutdown
                 System.exit(0);
             }
         });
         setSize(800, 600);
         setLocationRelativeTo(null);
+        restoreGeometry();
     }
 
     // Default constructor for backward compatibility
     public MainWindow() {
-        this(new ThemeManager());
+        this(AppContext.getThemeManager());
     }
 
     private void initializeComponents() {
         // Initialize combo boxes - level count is fixed at 12, no need to create a selector
         Integer[] seedSlotOptions = {6, 7, 8, 9, 10};
         seedSlotCountComboBox = new JComboBox<>(seedSlotOptions);
-        seedSlotCountComboBox.setSelectedItem(8);
+        int seedSlots = config.getInt(ConfigManager.SEED_SLOTS, 8);
+        seedSlotCountComboBox.setSelectedItem(seedSlots >= 6 && seedSlots <= 10 ? seedSlots : 8);
 
-        // Initialize checkboxes
+        // Initialize checkboxes from the last session's settings
         endlessModeCheckBox = new JCheckBox("Generate for endless modes (no levels)");
+        endlessModeCheckBox.setSelected(config.getBoolean(ConfigManager.ENDLESS, false));
         patternPerLevelCheckBox = new JCheckBox("Generate pattern for every level (instead of just once)");
-        patternPerLevelCheckBox.setSelected(true);
+        patternPerLevelCheckBox.setSelected(config.getBoolean(ConfigManager.PATTERN_PER_LEVEL, true));
+
+        String lastSeed = config.getString(ConfigManager.LAST_SEED, null);
+        lastSeedLabel = new JLabel(lastSeed != null ? "Last seed: " + lastSeed : " ");
+
+        generationProgressBar = new JProgressBar();
+        generationProgressBar.setIndeterminate(true);
+        generationProgressBar.setString("Generating...");
+        generationProgressBar.setStringPainted(true);
+        generationProgressBar.setVisible(false);
+        progressTimer = new Timer(150, e -> generationProgressBar.setVisible(true));
+        progressTimer.setRepeats(false);
 
         // Initialize menu items
         themeGlossaryMenuItem = new JMenuItem("Theme Glossary");
@@ -135,6 +160,15 @@ public class MainWindow extends JFrame {
         generateButton.addActionListener(e -> generatePreset());
         controlPanel.add(generateButton, gbc);
 
+        gbc.gridx = 0; gbc.gridy = 5;
+        gbc.gridwidth = 2;
+        controlPanel.add(lastSeedLabel, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 6;
+        gbc.gridwidth = 2;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        controlPanel.add(generationProgressBar, gbc);
+
         // Add control panel to the top
         add(controlPanel, BorderLayout.NORTH);
 
@@ -194,30 +228,142 @@ public class MainWindow extends JFrame {
 
         // Theme toggle handler
         themeToggleCheckBox.addActionListener(e -> toggleTheme());
+
+        // Generator options are saved as they change
+        seedSlotCountComboBox.addActionListener(e ->
+            config.setLong(ConfigManager.SEED_SLOTS, (Integer) seedSlotCountComboBox.getSelectedItem()));
+        endlessModeCheckBox.addItemListener(e ->
+            config.setBoolean(ConfigManager.ENDLESS, endlessModeCheckBox.isSelected()));
+        patternPerLevelCheckBox.addItemListener(e ->
+            config.setBoolean(ConfigManager.PATTERN_PER_LEVEL, patternPerLevelCheckBox.isSelected()));
+
+        // Keep the dark mode item in sync however the theme mode changes
+        configListener = (key, oldValue, newValue) -> {
+            if (ConfigManager.THEME_MODE.equals(key)) {
+                SwingUtilities.invokeLater(() -> themeToggleCheckBox.setSelected("dark".equals(newValue)));
+            }
+        };
+        config.addListener(configListener);
+
+        // Window geometry is saved as it changes; the normal bounds are kept while maximized
+        addComponentListener(new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentMoved(java.awt.event.ComponentEvent e) {
+                saveGeometry();
+            }
+
+            @Override
+            public void componentResized(java.awt.event.ComponentEvent e) {
+                saveGeometry();
+            }
+        });
+        addWindowStateListener(e -> config.setBoolean(ConfigManager.WINDOW_MAXIMIZED,
+            (e.getNewState() & Frame.MAXIMIZED_BOTH) == Frame.MAXIMIZED_BOTH));
+    }
+
+    private void saveGeometry() {
+        if (!isShowing() || (getExtendedState() & Frame.MAXIMIZED_BOTH) != 0) {
+            return;
+        }
+        Rectangle bounds = getBounds();
+        config.setLong(ConfigManager.WINDOW_X, bounds.x);
+        config.setLong(ConfigManager.WINDOW_Y, bounds.y);
+        config.setLong(ConfigManager.WINDOW_WIDTH, bounds.width);
+        config.setLong(ConfigManager.WINDOW_HEIGHT, bounds.height);
+    }
+
+    /**
+     * Restores the window bounds of the last session, if they still fit on a screen
+     */
+    private void restoreGeometry() {
+        int width = config.getInt(ConfigManager.WINDOW_WIDTH, 0);
+        int height = config.getInt(ConfigManager.WINDOW_HEIGHT, 0);
+        if (width > 0 && height > 0) {
+            Rectangle bounds = new Rectangle(config.getInt(ConfigManager.WINDOW_X, 0),
+                config.getInt(ConfigManager.WINDOW_Y, 0), width, height);
+            for (GraphicsDevice screen : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices()) {
+                if (screen.getDefaultConfiguration().getBounds().intersects(bounds)) {
+                    setBounds(bounds);
+                    break;
+                }
+            }
+        }
+        if (config.getBoolean(ConfigManager.WINDOW_MAXIMIZED, false)) {
+            setExtendedState(getExtendedState() | Frame.MAXIMIZED_BOTH);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        config.removeListener(configListener);
+        if (currentGeneration != null) {
+            currentGeneration.cancel(true);
+        }
+        progressTimer.stop();
+        generationExecutor.shutdownNow();
+        super.dispose();
     }
     
+    /**
+     * Starts generating a preset with the current options. Generation and text
+     * formatting run on the generator thread; only the result is put into the
+     * panels on the EDT. A newer request supersedes one that is still running
+     */
     private void generatePreset() {
-        try {
-            // Fixed to 12 levels
-            int numLevels = 12;
-            boolean generateLevels = !endlessModeCheckBox.isSelected();
-            int numSeedSlots = (Integer) seedSlotCountComboBox.getSelectedItem();
-            boolean generatePatternPerLevel = patternPerLevelCheckBox.isSelected();
-
-            // Generate the preset
-            PresetGenerator.Preset preset = presetGenerator.generatePreset(
-                numLevels, generateLevels, numSeedSlots, generatePatternPerLevel);
-
-            // Format and display the preset - populate the new panels
+        // Fixed to 12 levels
+        int numLevels = 12;
+        boolean generateLevels = !endlessModeCheckBox.isSelected();
+        int numSeedSlots = (Integer) seedSlotCountComboBox.getSelectedItem();
+        boolean generatePatternPerLevel = patternPerLevelCheckBox.isSelected();
+        GenerationOptions options = new GenerationOptions(numLevels, generateLevels, numSeedSlots, generatePatternPerLevel);
+
+        if (currentGeneration != null) {
+            currentGeneration.cancel(true);
+        }
+        currentGeneration = new PresetWorker(options);
+        // Only shown if generation takes long enough to notice, so quick runs don't flicker
+        progressTimer.restart();
+        generationExecutor.execute(currentGeneration);
+    }
+
+    /**
+     * Texts of a generated preset, ready to be put into the panels
+     */
+    private static final class PresetView {
+        final String seedCode;
+        final List<String> levelTexts = new ArrayList<>();
+        final List<String> slotTexts = new ArrayList<>();
+
+        PresetView(String seedCode) {
+            this.seedCode = seedCode;
+        }
+    }
+
+    /**
+     * Generates and formats one preset off the EDT
+     */
+    private class PresetWorker extends SwingWorker<PresetView, Void> {
+        private final GenerationOptions options;
+
+        PresetWorker(GenerationOptions options) {
+            this.options = options;
+        }
+
+        @Override
+        protected PresetView doInBackground() {
+            // Generate the preset from a fresh run seed, which is kept so the preset can be reproduced
+            long runSeed = RunSeed.newSeed();
+            PresetGenerator.Preset preset = presetGenerator.generatePreset(runSeed, options);
+            if (isCancelled()) {
+                return null;
+            }
+
+            PresetView view = new PresetView(RunSeed.encode(runSeed));
             List<String> levels = preset.getLevels();
             List<String> patterns = preset.getPatterns();
             List<String> seedSlots = preset.getSeedSlots();
 
-            // Clear previous content
-            levelsPanel.removeAll();
-            seedSlotsPanel.removeAll();
-
-            // Populate the levels panel (6x2 grid for 12 levels)
+            // Texts for the levels panel (6x2 grid for 12 levels)
             for (int i = 0; i < 12; i++) {
                 String levelText;
                 String patternText = "";
@@ -231,53 +377,80 @@ public class MainWindow extends JFrame {
                     levelText = "Level " + (i+1);
                     patternText = "\n[No level generated]";
                 }
-
-                JTextArea levelArea = new JTextArea(levelText + patternText);
-                levelArea.setEditable(false);
-                levelArea.setWrapStyleWord(true);
-                levelArea.setLineWrap(true);
-                levelArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
-                levelArea.setBorder(BorderFactory.createLoweredBevelBorder());
-                levelsPanel.add(levelArea);
+                view.levelTexts.add(levelText + patternText);
             }
 
-            // Populate the seed slots panel (5x2 grid, showing only the requested number of slots)
-            int currentNumSeedSlots = (Integer) seedSlotCountComboBox.getSelectedItem();
-            for (int i = 0; i < currentNumSeedSlots && i < seedSlots.size(); i++) {
-                JTextArea slotArea = new JTextArea("Seed Slot " + (i+1) + "\n" + seedSlots.get(i));
-                slotArea.setEditable(false);
-                slotArea.setWrapStyleWord(true);
-                slotArea.setLineWrap(true);
-                slotArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
-                slotArea.setBorder(BorderFactory.createLoweredBevelBorder());
-                seedSlotsPanel.add(slotArea);
+            // Texts for the seed slots panel (5x2 grid, showing only the requested number of slots)
+            int numSeedSlots = options.getNumSeedSlots();
+            for (int i = 0; i < numSeedSlots && i < seedSlots.size(); i++) {
+                view.slotTexts.add("Seed Slot " + (i+1) + "\n" + seedSlots.get(i));
             }
 
             // Add empty slots if needed to fill the 5x2 grid (up to 10 slots)
-            for (int i = currentNumSeedSlots; i < 10; i++) {
-                JTextArea emptySlot = new JTextArea("Seed Slot " + (i+1) + " (empty)");
-                emptySlot.setEditable(false);
-                emptySlot.setWrapStyleWord(true);
-                emptySlot.setLineWrap(true);
-                emptySlot.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
-                emptySlot.setBorder(BorderFactory.createLoweredBevelBorder());
-                seedSlotsPanel.add(emptySlot);
+            for (int i = numSeedSlots; i < 10; i++) {
+                view.slotTexts.add("Seed Slot " + (i+1) + " (empty)");
+            }
+            return view;
+        }
+
+        @Override
+        protected void done() {
+            // A newer request has taken over; its own done() updates the window. Cancelling
+            // on the EDT runs this right away, before the newer worker is even started
+            if (isCancelled() || currentGeneration != this) {
+                return;
             }
+            currentGeneration = null;
+            progressTimer.stop();
+            generationProgressBar.setVisible(false);
+
+            try {
+                showPreset(get());
+            } catch (Exception e) {
+                Throwable cause = e instanceof java.util.concurrent.ExecutionException ? e.getCause() : e;
+                JOptionPane.showMessageDialog(MainWindow.this,
+                    "Error generating preset: " + cause.getMessage(),
+                    "Generation Error",
+                    JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * Puts a generated preset into the panels. Must be called on the EDT
+     */
+    private void showPreset(PresetView view) {
+        config.setString(ConfigManager.LAST_SEED, view.seedCode);
+        lastSeedLabel.setText("Last seed: " + view.seedCode);
 
-            // Repaint the panels
-            levelsPanel.revalidate();
-            levelsPanel.repaint();
-            seedSlotsPanel.revalidate();
-            seedSlotsPanel.repaint();
-
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this,
-                "Error generating preset: " + e.getMessage(),
-                "Generation Error",
-                JOptionPane.ERROR_MESSAGE);
+        // Clear previous content
+        levelsPanel.removeAll();
+        seedSlotsPanel.removeAll();
+
+        for (String levelText : view.levelTexts) {
+            levelsPanel.add(createPresetCell(levelText));
+        }
+        for (String slotText : view.slotTexts) {
+            seedSlotsPanel.add(createPresetCell(slotText));
         }
+
+        // Repaint the panels
+        levelsPanel.revalidate();
+        levelsPanel.repaint();
+        seedSlotsPanel.revalidate();
+        seedSlotsPanel.repaint();
     }
-    
+
+    private JTextArea createPresetCell(String text) {
+        JTextArea area = new JTextArea(text);
+        area.setEditable(false);
+        area.setWrapStyleWord(true);
+        area.setLineWrap(true);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
+        area.setBorder(BorderFactory.createLoweredBevelBorder());
+        return area;
+    }
+
     private class ThemeGlossaryActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
@@ -404,15 +577,14 @@ public class MainWindow extends JFrame {
     }
 
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            // Initialize theme manager
-            ThemeManager themeManager = new ThemeManager();
-
+        // Initialize theme manager and resolve the current theme off the EDT
+        ThemeManager themeManager = AppContext.getThemeManager();
+        themeManager.resolveCurrentThemeAsync().thenAccept(theme -> SwingUtilities.invokeLater(() -> {
             // Apply current theme
-            themeManager.applyCurrentTheme();
+            themeManager.applyTheme(theme);
 
             MainWindow mainWindow = new MainWindow(themeManager);
             mainWindow.setVisible(true);
-        });
+        }));
     }
 }
\ No newline at end of file
@@ -1,15 +1,24 @@
 package peppermint.ui;
 
+import peppermint.AppContext;
+import peppermint.themes.ThemeIndex;
+import peppermint.themes.ThemeInstaller;
 import peppermint.themes.ThemeManager;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ThemeManagerDialog extends JDialog {
     private JList<String> themeList;
@@ -18,7 +27,15 @@ public class ThemeManagerDialog extends JDialog {
     private JButton removeThemeButton;
     private JButton applyThemeButton;
     private JButton refreshButton;
+    private JPanel installProgressPanel;
+    private JProgressBar installProgressBar;
+    private JLabel installStatusLabel;
+    private JButton cancelInstallButton;
+    private ThemeInstaller.Installation currentInstallation;
     private ThemeManager themeManager;
+    private final Map<String, ThemeIndex.Entry> themeEntries = new HashMap<>();
+    // Keeps the list in sync with the themes directory while the dialog is open
+    private final ThemeIndex.Listener indexListener = entries -> SwingUtilities.invokeLater(() -> showThemes(entries));
 
     public ThemeManagerDialog(Frame parent, ThemeManager themeManager) {
         super(parent, "Theme Manager", true);
@@ -27,24 +44,34 @@ public class ThemeManagerDialog extends JDialog {
         setupLayout();
         setupEventHandlers();
         loadThemes();
+        watchThemes();
         setSize(500, 400);
         setLocationRelativeTo(parent);
     }
 
     // Default constructor for backward compatibility
     public ThemeManagerDialog(Frame parent) {
-        this(parent, new ThemeManager());
+        this(parent, AppContext.getThemeManager());
     }
 
     private void initializeComponents() {
         themeListModel = new DefaultListModel<>();
         themeList = new JList<>(themeListModel);
         themeList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        themeList.setCellRenderer(new ThemeCellRenderer());
 
         installThemeButton = new JButton("Install Theme (.pmt)");
         removeThemeButton = new JButton("Remove Selected");
         applyThemeButton = new JButton("Apply Selected");
         refreshButton = new JButton("Refresh");
+
+        installProgressBar = new JProgressBar();
+        installProgressBar.setStringPainted(true);
+        installStatusLabel = new JLabel(" ");
+        cancelInstallButton = new JButton("Cancel");
+
+        // Theme packages can be dropped onto the list
+        themeList.setTransferHandler(new ThemePackageDropHandler());
     }
 
     private void setupLayout() {
@@ -57,20 +84,40 @@ public class ThemeManagerDialog extends JDialog {
         buttonPanel.add(applyThemeButton);
         buttonPanel.add(refreshButton);
 
+        // Progress of a running installation, hidden otherwise
+        installProgressPanel = new JPanel(new BorderLayout(5, 0));
+        installProgressPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 0, 5));
+        installProgressPanel.add(installProgressBar, BorderLayout.CENTER);
+        installProgressPanel.add(cancelInstallButton, BorderLayout.EAST);
+        installProgressPanel.add(installStatusLabel, BorderLayout.SOUTH);
+        installProgressPanel.setVisible(false);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(installProgressPanel, BorderLayout.NORTH);
+        southPanel.add(buttonPanel, BorderLayout.CENTER);
+
         // Center panel for theme list
         JScrollPane scrollPane = new JScrollPane(themeList);
         scrollPane.setPreferredSize(new Dimension(400, 300));
+        scrollPane.getViewport().setTransferHandler(themeList.getTransferHandler());
 
-        add(new JLabel("Available Themes:"), BorderLayout.NORTH);
+        add(new JLabel("Available Themes (drop .pmt files here to install):"), BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
-        add(buttonPanel, BorderLayout.SOUTH);
+        add(southPanel, BorderLayout.SOUTH);
     }
 
     private void setupEventHandlers() {
         installThemeButton.addActionListener(new InstallThemeActionListener());
         removeThemeButton.addActionListener(new RemoveThemeActionListener());
         applyThemeButton.addActionListener(new ApplyThemeActionListener());
-        refreshButton.addActionListener(e -> loadThemes());
+        cancelInstallButton.addActionListener(e -> {
+            if (currentInstallation != null) {
+                currentInstallation.cancel();
+                cancelInstallButton.setEnabled(false);
+                installStatusLabel.setText("Cancelling...");
+            }
+        });
+        refreshButton.addActionListener(e -> refreshThemes());
         
         // Enable/disable buttons based on selection
         themeList.addListSelectionListener(e -> {
@@ -82,8 +129,31 @@ public class ThemeManagerDialog extends JDialog {
         });
     }
 
+    /**
+     * Shows the themes the index currently holds. Never waits for indexing
+     */
     private void loadThemes() {
+        showThemes(themeManager.getThemeIndex().peekEntries());
+    }
+
+    /**
+     * Rescans the themes directory in the background, then updates the list
+     */
+    private void refreshThemes() {
+        refreshButton.setEnabled(false);
+        CompletableFuture.runAsync(() -> themeManager.getThemeIndex().refresh())
+            .whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+                refreshButton.setEnabled(true);
+                if (isDisplayable()) {
+                    loadThemes();
+                }
+            }));
+    }
+
+    private void showThemes(List<ThemeIndex.Entry> entries) {
+        String selectedTheme = themeList.getSelectedValue();
         themeListModel.clear();
+        themeEntries.clear();
         
         // Add default themes
         themeListModel.addElement("default");
@@ -91,11 +161,185 @@ public class ThemeManagerDialog extends JDialog {
         themeListModel.addElement("dark");
         
         // Load custom themes
-        String[] availableThemes = themeManager.getAvailableThemes();
-        for (String theme : availableThemes) {
-            if (!"default".equals(theme) && !"light".equals(theme) && !"dark".equals(theme)) {
+        for (ThemeIndex.Entry entry : entries) {
+            String theme = entry.getName();
+            if (!"default".equals(theme) && !"light".equals(theme) && !"dark".equals(theme)
+                    && !themeEntries.containsKey(theme)) {
                 themeListModel.addElement(theme);
+                themeEntries.put(theme, entry);
+            }
+        }
+
+        if (selectedTheme != null) {
+            themeList.setSelectedValue(selectedTheme, true);
+        }
+    }
+
+    /**
+     * Starts watching the themes directory so installed, changed and removed themes
+     * show up immediately. Starting indexes the directory if that hasn't happened
+     * yet, so it runs in the background and the list is updated when it is done
+     */
+    private void watchThemes() {
+        ThemeIndex themeIndex = themeManager.getThemeIndex();
+        themeIndex.addListener(indexListener);
+        CompletableFuture.runAsync(() -> {
+            try {
+                themeIndex.start();
+            } catch (java.io.IOException e) {
+                System.out.println("Warning: Could not watch the themes directory, use Refresh to update the list: " + e.getMessage());
+            }
+        }).whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+            if (isDisplayable()) {
+                loadThemes();
             }
+        }));
+    }
+
+    @Override
+    public void dispose() {
+        themeManager.getThemeIndex().removeListener(indexListener);
+        if (currentInstallation != null) {
+            currentInstallation.cancel();
+        }
+        super.dispose();
+    }
+
+    /**
+     * Installs theme packages on the installer's worker pool, showing per-file
+     * progress while the dialog stays responsive
+     * @param packages .pmt files to install
+     */
+    private void installThemes(List<Path> packages) {
+        if (packages.isEmpty()) {
+            return;
+        }
+        if (currentInstallation != null) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Please wait until the current installation has finished.",
+                "Installation Running",
+                JOptionPane.WARNING_MESSAGE
+            );
+            return;
+        }
+
+        installThemeButton.setEnabled(false);
+        cancelInstallButton.setEnabled(true);
+        installProgressBar.setMaximum(packages.size());
+        installProgressBar.setValue(0);
+        installProgressBar.setString("0 / " + packages.size());
+        installStatusLabel.setText("Installing " + packages.size() + " theme(s)...");
+        installProgressPanel.setVisible(true);
+        revalidate();
+
+        ThemeInstaller.Installation installation = themeManager.getThemeInstaller().install(packages,
+            (result, done, total) -> SwingUtilities.invokeLater(() -> {
+                installProgressBar.setValue(done);
+                installProgressBar.setString(done + " / " + total);
+                installStatusLabel.setText(result.toString());
+            }));
+        currentInstallation = installation;
+
+        installation.getResults().whenComplete((results, error) -> SwingUtilities.invokeLater(() -> {
+            currentInstallation = null;
+            installProgressPanel.setVisible(false);
+            installThemeButton.setEnabled(true);
+            revalidate();
+            if (isDisplayable()) {
+                loadThemes();
+                showInstallSummary(results, error);
+            }
+        }));
+    }
+
+    private void showInstallSummary(List<ThemeInstaller.Result> results, Throwable error) {
+        if (error != null) {
+            JOptionPane.showMessageDialog(this, "Failed to install themes: " + error.getMessage(),
+                                          "Installation Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        int installed = 0;
+        int cancelled = 0;
+        List<ThemeInstaller.Result> failures = new ArrayList<>();
+        for (ThemeInstaller.Result result : results) {
+            switch (result.getStatus()) {
+                case INSTALLED: installed++; break;
+                case CANCELLED: cancelled++; break;
+                default: failures.add(result); break;
+            }
+        }
+
+        StringBuilder message = new StringBuilder();
+        message.append(installed).append(" of ").append(results.size()).append(" theme(s) installed successfully!");
+        if (cancelled > 0) {
+            message.append("\n").append(cancelled).append(" cancelled.");
+        }
+        if (!failures.isEmpty()) {
+            message.append("\n\nFailed:");
+            for (int i = 0; i < failures.size() && i < 10; i++) {
+                message.append("\n").append(failures.get(i));
+            }
+            if (failures.size() > 10) {
+                message.append("\n... and ").append(failures.size() - 10).append(" more");
+            }
+        }
+
+        JOptionPane.showMessageDialog(
+            this,
+            message.toString(),
+            failures.isEmpty() ? "Themes Installed" : "Installation Error",
+            failures.isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE
+        );
+    }
+
+    /**
+     * Accepts .pmt files dropped from the file manager
+     */
+    private class ThemePackageDropHandler extends TransferHandler {
+        @Override
+        public boolean canImport(TransferSupport support) {
+            return support.isDataFlavorSupported(DataFlavor.javaFileListFlavor);
+        }
+
+        @Override
+        public boolean importData(TransferSupport support) {
+            if (!canImport(support)) {
+                return false;
+            }
+            try {
+                List<?> files = (List<?>) support.getTransferable().getTransferData(DataFlavor.javaFileListFlavor);
+                List<Path> packages = new ArrayList<>();
+                for (Object file : files) {
+                    Path path = ((File) file).toPath();
+                    if (path.getFileName().toString().toLowerCase().endsWith(".pmt")) {
+                        packages.add(path);
+                    }
+                }
+                installThemes(packages);
+                return !packages.isEmpty();
+            } catch (Exception e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Shows the mode and author of custom themes next to their name
+     */
+    private class ThemeCellRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            ThemeIndex.Entry entry = themeEntries.get(value);
+            if (entry != null) {
+                setText(value + "  (" + entry.getMode()
+                        + (entry.getAuthor() != null ? ", by " + entry.getAuthor() : "") + ")");
+            }
+            return this;
         }
     }
 
@@ -103,40 +347,19 @@ public class ThemeManagerDialog extends JDialog {
         @Override
         public void actionPerformed(ActionEvent e) {
             JFileChooser fileChooser = new JFileChooser();
-            fileChooser.setDialogTitle("Select Theme Package (.pmt)");
+            fileChooser.setDialogTitle("Select Theme Packages (.pmt)");
             fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+            fileChooser.setMultiSelectionEnabled(true);
             fileChooser.setAcceptAllFileFilterUsed(false);
             fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("PMT Files", "pmt"));
 
             int result = fileChooser.showOpenDialog(ThemeManagerDialog.this);
             if (result == JFileChooser.APPROVE_OPTION) {
-                File selectedFile = fileChooser.getSelectedFile();
-                
-                try {
-                    // Copy the .pmt file to the PepperMintThemes directory
-                    Path themesDir = Paths.get("PepperMintThemes");
-                    Files.createDirectories(themesDir);
-                    
-                    Path targetPath = themesDir.resolve(selectedFile.getName());
-                    Files.copy(selectedFile.toPath(), targetPath);
-                    
-                    JOptionPane.showMessageDialog(
-                        ThemeManagerDialog.this,
-                        "Theme installed successfully!\n" +
-                        "Restart the application to see the theme in the list.",
-                        "Theme Installed",
-                        JOptionPane.INFORMATION_MESSAGE
-                    );
-                    
-                    loadThemes();
-                } catch (Exception ex) {
-                    JOptionPane.showMessageDialog(
-                        ThemeManagerDialog.this,
-                        "Failed to install theme: " + ex.getMessage(),
-                        "Installation Error",
-                        JOptionPane.ERROR_MESSAGE
-                    );
+                List<Path> packages = new ArrayList<>();
+                for (File selectedFile : fileChooser.getSelectedFiles()) {
+                    packages.add(selectedFile.toPath());
                 }
+                installThemes(packages);
             }
         }
     }
@@ -188,9 +411,10 @@ public class ThemeManagerDialog extends JDialog {
                     
                     if (Files.exists(themeFile)) {
                         Files.delete(themeFile);
+                        themeManager.getThemeCache().invalidate(themeFile);
                     }
                     
-                    loadThemes();
+                    refreshThemes();
                     JOptionPane.showMessageDialog(
                         ThemeManagerDialog.this,
                         "Theme removed successfully!",
@@ -238,11 +462,11 @@ public class ThemeManagerDialog extends JDialog {
             }
             
             themeManager.setCurrentTheme(selectedTheme);
+            themeManager.applyCurrentTheme();
             
             JOptionPane.showMessageDialog(
                 ThemeManagerDialog.this,
-                "Theme '" + selectedTheme + "' has been applied!\n" +
-                "You may need to restart the application for changes to take effect.",
+                "Theme '" + selectedTheme + "' has been applied!",
                 "Theme Applied",
                 JOptionPane.INFORMATION_MESSAGE
             );